@@ -0,0 +1,70 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * What the benchmarks share: parsing the ILOC files they are given, keeping the parser's messages
+ * out of the timings, and taking the best of several timed rounds.
+ */
+public class ILOCBenchmark {
+
+    /**
+     * Runs code with System.out and System.err discarded, so messages such as "Parse success"
+     * are neither printed nor timed. Not for use while other threads print
+     *
+     * @param action the code to run
+     * @return what the code returns
+     */
+    public static <T> T Quietly(Supplier<T> action) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+        try {
+            return action.get();
+        }
+        finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+    }
+
+    /**
+     * Parses a file without printing
+     *
+     * @param filePath the file to parse
+     * @return the IR of the file, null if the file has errors
+     */
+    public static List<Integer[]> ParseFile(String filePath) {
+        ILOCParser parser = new ILOCParser(filePath, false, false);
+        List<Integer[]> iRep = new ArrayList<>();
+        parser.SetRep(iRep);
+        return Quietly(() -> {
+            parser.Parse();
+            return parser.Succeeded() ? iRep : null;
+        });
+    }
+
+    /**
+     * Times code a few times to warm it up, then keeps the fastest of several rounds
+     *
+     * @param warmUps the number of rounds to discard
+     * @param rounds the number of rounds to keep the fastest of
+     * @param timed times one round, in nanoseconds
+     * @return the fastest round, in nanoseconds
+     */
+    public static long Best(int warmUps, int rounds, LongSupplier timed) {
+        for (int warmUp = 0; warmUp < warmUps; warmUp++) {
+            timed.getAsLong();
+        }
+        long nanos = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            nanos = Math.min(nanos, timed.getAsLong());
+        }
+        return nanos;
+    }
+}
@@ -0,0 +1,18 @@
+import java.util.function.IntConsumer;
+
+/**
+ * A block of ILOC that can be executed, by ILOCInterpreter or as a class made by ILOCCompiler.
+ *
+ * Memory is an array of words, so the word at address a is memory[a >> 2]. Every register
+ * starts at 0 on each run.
+ */
+public interface ILOCBlock {
+
+    /**
+     * Executes the block once
+     *
+     * @param memory the memory the block loads from and stores to
+     * @param output called with the word each output operation prints
+     */
+    void Run(int[] memory, IntConsumer output);
+}
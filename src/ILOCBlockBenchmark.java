@@ -0,0 +1,156 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that a block compiled by ILOCCompiler does the same as ILOCInterpreter,
+ * then times both running the same block many times.
+ */
+public class ILOCBlockBenchmark {
+
+    /**
+     * The number of words of memory the blocks run with
+     */
+    private static final int MEMORY_WORDS = 1 << 16;
+
+    /**
+     * The sum of every word the timed blocks print. Nothing reads it, but the JIT can't tell, so
+     * the output of the blocks is kept
+     */
+    private static long printedSum;
+
+    /**
+     * Checks the compiler on random blocks and on the files, then times the files
+     * @param args the ILOC files, each parsed as one block
+     */
+    public static void main(String[] args) {
+        boolean equivalent = checkRandomBlocks(2000, 1);
+        List<List<Integer[]>> blocks = new ArrayList<>();
+        List<String> blockPaths = new ArrayList<>();
+        for (String filePath : args) {
+            List<Integer[]> iRep = ILOCBenchmark.ParseFile(filePath);
+            if (iRep == null) {
+                System.err.println(filePath + ": the file has errors, not timing it");
+                continue;
+            }
+            blocks.add(iRep);
+            blockPaths.add(filePath);
+            if (!checkEquivalent(iRep)) {
+                System.err.println(filePath + ": the compiled block differs from the interpreter");
+                equivalent = false;
+            }
+        }
+        if (!equivalent) {
+            System.err.println("The compiled blocks are not equivalent, not timing them");
+            return;
+        }
+        System.out.println("The compiled blocks agree with the interpreter");
+
+        for (int i = 0; i < blocks.size(); i++) {
+            List<Integer[]> iRep = blocks.get(i);
+            ILOCBlock interpreted = new ILOCInterpreter(iRep);
+            ILOCBlock compiled = ILOCCompiler.Compile(iRep);
+            int runs = Math.max(10, 2_000_000 / Math.max(1, iRep.size()));
+
+            long interpretedNanos, compiledNanos;
+            try {
+                interpretedNanos = ILOCBenchmark.Best(5, 10, () -> time(interpreted, runs));
+                compiledNanos = ILOCBenchmark.Best(5, 10, () -> time(compiled, runs));
+            }
+            catch (RuntimeException e) { // such as a load from outside the memory
+                System.err.println(blockPaths.get(i) + ": the block throws " + e.getClass().getName()
+                        + ", not timing it");
+                continue;
+            }
+            System.out.printf("%s: %d operations x %d runs, interpreted %.2f ms, compiled %.2f ms (%.2fx)%n",
+                    blockPaths.get(i), iRep.size(), runs, interpretedNanos / 1e6, compiledNanos / 1e6,
+                    (double) interpretedNanos / compiledNanos);
+        }
+    }
+
+    /**
+     * Checks the compiler against the interpreter on random blocks
+     * @param count the number of blocks to check
+     * @param seed the random seed
+     * @return whether every block ran the same way
+     */
+    private static boolean checkRandomBlocks(int count, long seed) {
+        Random random = new Random(seed);
+        boolean equivalent = true;
+        for (int i = 0; i < count; i++) {
+            List<Integer[]> iRep = new ArrayList<>();
+            int length = random.nextInt(i % 10 == 0 ? 3000 : 40);
+            for (int op = 0; op < length; op++) {
+                Integer[] iRepElement = new Integer[13];
+                int opCode = random.nextInt(10);
+                iRepElement[0] = opCode;
+                if (opCode == ILOCInterpreter.LOADI || opCode == ILOCInterpreter.OUTPUT)
+                    iRepElement[1] = random.nextInt(64) * (random.nextInt(8) == 0 ? 1 : 4);
+                else if (opCode != ILOCInterpreter.NOP)
+                    iRepElement[1] = random.nextInt(i % 10 == 0 ? 400 : 8);
+                if (opCode > ILOCInterpreter.STORE && opCode < ILOCInterpreter.OUTPUT)
+                    iRepElement[5] = random.nextInt(i % 10 == 0 ? 400 : 8);
+                if (opCode < ILOCInterpreter.OUTPUT)
+                    iRepElement[9] = random.nextInt(i % 10 == 0 ? 400 : 8);
+                iRep.add(iRepElement);
+            }
+            if (!checkEquivalent(iRep)) {
+                System.err.println("Random block " + i + ": the compiled block differs from the interpreter");
+                equivalent = false;
+            }
+        }
+        return equivalent;
+    }
+
+    /**
+     * @param iRep a block
+     * @return whether the compiled block prints the same, leaves the same memory
+     *         and throws the same exception as the interpreter
+     */
+    private static boolean checkEquivalent(List<Integer[]> iRep) {
+        int[] interpretedMemory = new int[MEMORY_WORDS];
+        int[] compiledMemory = new int[MEMORY_WORDS];
+        List<Integer> interpretedOutput = new ArrayList<>();
+        List<Integer> compiledOutput = new ArrayList<>();
+        String interpretedFailure = run(new ILOCInterpreter(iRep), interpretedMemory, interpretedOutput);
+        String compiledFailure = run(ILOCCompiler.Compile(iRep), compiledMemory, compiledOutput);
+        return interpretedOutput.equals(compiledOutput) && Arrays.equals(interpretedMemory, compiledMemory)
+                && interpretedFailure.equals(compiledFailure);
+    }
+
+    /**
+     * Runs a block once
+     * @param block the block
+     * @param memory the memory to run it with
+     * @param output collects the words printed
+     * @return the class of the exception the block threw, empty if none
+     */
+    private static String run(ILOCBlock block, int[] memory, List<Integer> output) {
+        try {
+            block.Run(memory, output::add);
+            return "";
+        }
+        catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    /**
+     * @param block the block to run
+     * @param runs the number of times to run it
+     * @return how long the runs took in nanoseconds
+     * @throws RuntimeException if the block throws, such as for a load from outside the memory
+     */
+    private static long time(ILOCBlock block, int runs) {
+        int[] memory = new int[MEMORY_WORDS];
+        long[] printed = new long[1];
+        long start = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            block.Run(memory, word -> printed[0] += word);
+        }
+        long nanos = System.nanoTime() - start;
+        printedSum += printed[0];
+        return nanos;
+    }
+}
@@ -0,0 +1,558 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compiles a block of ILOC into a hidden JVM class, so HotSpot can optimize the whole block.
+ *
+ * The class implements ILOCBlock. Registers become int locals, memory is the int[] passed to Run,
+ * and output calls the IntConsumer. The class file is written byte by byte. A block has no branches,
+ * so its methods need no stack map frames.
+ *
+ * HotSpot doesn't JIT compile a method over 8000 bytes of bytecode, so a long block is split into
+ * segment methods under that size. A segment loads the registers it reads before writing them from
+ * a shared register array, and stores the registers it writes back into the array at the end.
+ */
+public class ILOCCompiler {
+
+    /**
+     * The most bytecode a segment method may have. HotSpot's limit is 8000 bytes
+     */
+    private static final int SEGMENT_LIMIT = 7500;
+
+    /**
+     * The most bytecode one operation can take, and one load or store of a register between its
+     * local and the register array
+     */
+    private static final int OP_SIZE = 13, SPILL_SIZE = 9;
+
+    /**
+     * The first local variable holding a register in a segment, after memory, output and the register array
+     */
+    private static final int FIRST_REGISTER_LOCAL = 3;
+
+    /**
+     * Names and descriptors of the compiled class
+     */
+    private static final String CLASS_NAME = "ILOCCompiledBlock", CONSUMER = "java/util/function/IntConsumer",
+            RUN_DESCRIPTOR = "([IL" + CONSUMER + ";)V", SEGMENT_DESCRIPTOR = "([IL" + CONSUMER + ";[I)V";
+
+    /**
+     * The JVM opcodes the compiler writes
+     */
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13,
+            ILOAD = 0x15, ILOAD_0 = 0x1A, ALOAD_0 = 0x2A, IALOAD = 0x2E, ISTORE = 0x36, ISTORE_0 = 0x3B,
+            ASTORE_3 = 0x4E, IASTORE = 0x4F, IADD = 0x60, ISUB = 0x64, IMUL = 0x68, ISHL = 0x78, ISHR = 0x7A,
+            RETURN = 0xB1, INVOKESPECIAL = 0xB7, INVOKESTATIC = 0xB8, INVOKEINTERFACE = 0xB9,
+            NEWARRAY = 0xBC, WIDE = 0xC4, T_INT = 10;
+
+    /**
+     * The block being compiled
+     */
+    private final ILOCInterpreter block;
+
+    /**
+     * The constant pool being written, and the number of entries plus one
+     */
+    private final ByteArrayOutputStream pool;
+    private int poolCount;
+
+    /**
+     * The index of each constant pool entry, by its kind and value
+     */
+    private final HashMap<String, Integer> poolIndices;
+
+    /**
+     * The local each register is in, for the segment stamped in localStamps
+     */
+    private final int[] registerLocals, localStamps;
+
+    /**
+     * The segment each register was last defined in, to find the registers a segment stores back
+     */
+    private final int[] defStamps;
+
+    /**
+     * Creates a compiler for one block
+     *
+     * @param block the encoded block
+     */
+    private ILOCCompiler(ILOCInterpreter block) {
+        this.block = block;
+        this.pool = new ByteArrayOutputStream();
+        this.poolCount = 1;
+        this.poolIndices = new HashMap<>();
+        this.registerLocals = new int[block.registerCount];
+        this.localStamps = new int[block.registerCount];
+        this.defStamps = new int[block.registerCount];
+    }
+
+    /**
+     * Compiles a block and loads it as a hidden class
+     *
+     * @param iRep the IR of a block that ILOCParser parsed without errors
+     * @return the compiled block
+     * @throws IllegalArgumentException if an operation is missing an operand,
+     *                                  or the block is too big for one class file
+     */
+    public static ILOCBlock Compile(List<Integer[]> iRep) {
+        byte[] classBytes = new ILOCCompiler(new ILOCInterpreter(iRep)).ClassBytes();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classBytes, true);
+            return (ILOCBlock) lookup.lookupClass().getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The compiled block can't be loaded", e);
+        }
+    }
+
+    /**
+     * @return the class file of the compiled block
+     */
+    private byte[] ClassBytes() {
+        List<Integer> segmentStarts = this.Segments();
+        int segmentCount = segmentStarts.size() - 1;
+
+        int thisClass = this.ClassEntry(CLASS_NAME);
+        int superClass = this.ClassEntry("java/lang/Object");
+        int blockInterface = this.ClassEntry("ILOCBlock");
+        int codeName = this.Utf8Entry("Code");
+
+        List<byte[]> methods = new ArrayList<>();
+        methods.add(this.Method(0x0001, "<init>", "()V", 1, 1, this.Constructor(), codeName));
+        methods.add(this.Method(0x0001, "Run", RUN_DESCRIPTOR, 3, 4, this.RunCode(segmentCount), codeName));
+        for (int segment = 0; segment < segmentCount; segment++) {
+            ByteArrayOutputStream code = new ByteArrayOutputStream();
+            int locals = this.SegmentCode(segment + 1, segmentStarts.get(segment), segmentStarts.get(segment + 1), code);
+            methods.add(this.Method(0x000A, "Segment" + segment, SEGMENT_DESCRIPTOR, 3, locals,
+                    code.toByteArray(), codeName));
+        }
+        if (this.poolCount > 0xFFFF)
+            throw new IllegalArgumentException("The block has too many constants for one class file");
+
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(classFile);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);  // minor version
+            out.writeShort(61); // Java 17
+            out.writeShort(this.poolCount);
+            this.pool.writeTo(out);
+            out.writeShort(0x0031); // public final super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(blockInterface);
+            out.writeShort(0); // no fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0); // no attributes
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e); // a ByteArrayOutputStream doesn't throw
+        }
+        return classFile.toByteArray();
+    }
+
+    /**
+     * Splits the block into segments whose methods stay under SEGMENT_LIMIT bytes
+     *
+     * @return the first operation of each segment, followed by the number of operations
+     */
+    private List<Integer> Segments() {
+        List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        int segment = 1;
+        int size = 1; // the return
+        for (int op = 0; op < this.block.opCodes.length; op++) {
+            int added = OP_SIZE;
+            for (int operand = 0; operand < 3; operand++) {
+                int register = this.Register(op, operand);
+                if (register < 0)
+                    continue;
+                if (this.localStamps[register] != segment)
+                    added += SPILL_SIZE; // loaded at the start
+                if (this.IsDef(op, operand) && this.defStamps[register] != segment)
+                    added += SPILL_SIZE; // stored at the end
+            }
+            if (size + added > SEGMENT_LIMIT) {
+                starts.add(op);
+                segment++;
+                size = 1;
+                op--; // again, in the new segment
+                continue;
+            }
+            size += added;
+            for (int operand = 0; operand < 3; operand++) {
+                int register = this.Register(op, operand);
+                if (register < 0)
+                    continue;
+                this.localStamps[register] = segment;
+                if (this.IsDef(op, operand))
+                    this.defStamps[register] = segment;
+            }
+        }
+        starts.add(this.block.opCodes.length);
+        Arrays.fill(this.localStamps, 0);
+        Arrays.fill(this.defStamps, 0);
+        return starts;
+    }
+
+    /**
+     * Writes the code of a segment
+     *
+     * @param stamp a number for the segment, counting from 1
+     * @param start the first operation of the segment
+     * @param end the operation after the last of the segment
+     * @param code where to write the code
+     * @return the number of locals the code uses
+     */
+    private int SegmentCode(int stamp, int start, int end, ByteArrayOutputStream code) {
+        int[] opCodes = this.block.opCodes;
+        int[] operands = this.block.operands;
+
+        // give each register a local, loading those read before they're written
+        int locals = FIRST_REGISTER_LOCAL;
+        List<Integer> defined = new ArrayList<>();
+        for (int op = start; op < end; op++) {
+            for (int operand = 0; operand < 3; operand++) {
+                int register = this.Register(op, operand);
+                if (register < 0)
+                    continue;
+                boolean def = this.IsDef(op, operand);
+                if (this.localStamps[register] != stamp) {
+                    this.localStamps[register] = stamp;
+                    this.registerLocals[register] = locals++;
+                    if (!def) {
+                        code.write(ALOAD_0 + 2);
+                        this.PushInt(register, code);
+                        code.write(IALOAD);
+                        this.LocalInstruction(ISTORE, ISTORE_0, this.registerLocals[register], code);
+                    }
+                }
+                if (def && this.defStamps[register] != stamp) {
+                    this.defStamps[register] = stamp;
+                    defined.add(register);
+                }
+            }
+        }
+
+        for (int op = start; op < end; op++) {
+            int slot = op * 3;
+            int first = operands[slot], second = operands[slot + 1], target = operands[slot + 2];
+            switch (opCodes[op]) {
+                case ILOCInterpreter.LOAD:
+                    code.write(ALOAD_0);
+                    this.Load(first, code);
+                    code.write(ICONST_0 + 2);
+                    code.write(ISHR);
+                    code.write(IALOAD);
+                    this.Store(target, code);
+                    break;
+                case ILOCInterpreter.LOADI:
+                    this.PushInt(first, code);
+                    this.Store(target, code);
+                    break;
+                case ILOCInterpreter.STORE:
+                    code.write(ALOAD_0);
+                    this.Load(target, code);
+                    code.write(ICONST_0 + 2);
+                    code.write(ISHR);
+                    this.Load(first, code);
+                    code.write(IASTORE);
+                    break;
+                case ILOCInterpreter.OUTPUT:
+                    code.write(ALOAD_0 + 1);
+                    code.write(ALOAD_0);
+                    this.PushInt(first >> 2, code);
+                    code.write(IALOAD);
+                    code.write(INVOKEINTERFACE);
+                    this.WriteShort(this.MemberEntry(11, CONSUMER, "accept", "(I)V"), code);
+                    code.write(2); // argument slots, the receiver included
+                    code.write(0);
+                    break;
+                case ILOCInterpreter.NOP:
+                    break;
+                default: // add, sub, mult, lshift, rshift
+                    this.Load(first, code);
+                    this.Load(second, code);
+                    code.write(ArithmeticInstruction(opCodes[op]));
+                    this.Store(target, code);
+                    break;
+            }
+        }
+
+        // store the registers the segment wrote for the segments after it
+        for (int register : defined) {
+            code.write(ALOAD_0 + 2);
+            this.PushInt(register, code);
+            this.Load(register, code);
+            code.write(IASTORE);
+        }
+        code.write(RETURN);
+        if (code.size() > 0xFFFF)
+            throw new IllegalArgumentException("A segment of the block is too big for one method");
+        return locals;
+    }
+
+    /**
+     * @return the code of Run, which makes the register array and calls each segment
+     */
+    private byte[] RunCode(int segmentCount) {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        this.PushInt(this.block.registerCount, code);
+        code.write(NEWARRAY);
+        code.write(T_INT);
+        code.write(ASTORE_3);
+        for (int segment = 0; segment < segmentCount; segment++) {
+            code.write(ALOAD_0 + 1);
+            code.write(ALOAD_0 + 2);
+            code.write(ALOAD_0 + 3);
+            code.write(INVOKESTATIC);
+            this.WriteShort(this.MemberEntry(10, CLASS_NAME, "Segment" + segment, SEGMENT_DESCRIPTOR), code);
+        }
+        code.write(RETURN);
+        if (code.size() > 0xFFFF)
+            throw new IllegalArgumentException("The block has too many segments for one method");
+        return code.toByteArray();
+    }
+
+    /**
+     * @return the code of the constructor, which calls the Object constructor
+     */
+    private byte[] Constructor() {
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        code.write(ALOAD_0);
+        code.write(INVOKESPECIAL);
+        this.WriteShort(this.MemberEntry(10, "java/lang/Object", "<init>", "()V"), code);
+        code.write(RETURN);
+        return code.toByteArray();
+    }
+
+    /**
+     * @return a method_info structure with a Code attribute
+     */
+    private byte[] Method(int access, String name, String descriptor, int maxStack, int maxLocals,
+                          byte[] code, int codeName) {
+        ByteArrayOutputStream method = new ByteArrayOutputStream();
+        this.WriteShort(access, method);
+        this.WriteShort(this.Utf8Entry(name), method);
+        this.WriteShort(this.Utf8Entry(descriptor), method);
+        this.WriteShort(1, method); // the Code attribute
+        this.WriteShort(codeName, method);
+        int length = 12 + code.length;
+        this.WriteShort(length >>> 16, method);
+        this.WriteShort(length, method);
+        this.WriteShort(maxStack, method);
+        this.WriteShort(maxLocals, method);
+        this.WriteShort(0, method);
+        this.WriteShort(code.length, method);
+        method.writeBytes(code);
+        this.WriteShort(0, method); // no exception table
+        this.WriteShort(0, method); // no attributes
+        return method.toByteArray();
+    }
+
+    /**
+     * @param op an operation
+     * @param operand the operand, 0 to 2
+     * @return the renumbered register of the operand, -1 if it isn't a register
+     */
+    private int Register(int op, int operand) {
+        if (ILOCDefUseIndex.OperandKind(this.block.opCodes[op], operand) == ILOCDefUseIndex.NONE)
+            return -1;
+        return this.block.operands[op * 3 + operand];
+    }
+
+    /**
+     * @param op an operation
+     * @param operand the operand, 0 to 2
+     * @return whether the operand is a register the operation defines
+     */
+    private boolean IsDef(int op, int operand) {
+        return ILOCDefUseIndex.OperandKind(this.block.opCodes[op], operand) == ILOCDefUseIndex.DEF;
+    }
+
+    /**
+     * @param opCode an arithmetic opcode
+     * @return the JVM instruction for it
+     */
+    private static int ArithmeticInstruction(int opCode) {
+        switch (opCode) {
+            case ILOCInterpreter.ADD:
+                return IADD;
+            case ILOCInterpreter.SUB:
+                return ISUB;
+            case ILOCInterpreter.MULT:
+                return IMUL;
+            case ILOCInterpreter.LSHIFT:
+                return ISHL;
+            default:
+                return ISHR;
+        }
+    }
+
+    /**
+     * Writes the load of a register's local
+     */
+    private void Load(int register, ByteArrayOutputStream code) {
+        this.LocalInstruction(ILOAD, ILOAD_0, this.registerLocals[register], code);
+    }
+
+    /**
+     * Writes the store to a register's local
+     */
+    private void Store(int register, ByteArrayOutputStream code) {
+        this.LocalInstruction(ISTORE, ISTORE_0, this.registerLocals[register], code);
+    }
+
+    /**
+     * Writes iload or istore in its shortest form
+     *
+     * @param instruction ILOAD or ISTORE
+     * @param shortForm the form for local 0, ILOAD_0 or ISTORE_0
+     * @param local the local
+     * @param code where to write the instruction
+     */
+    private void LocalInstruction(int instruction, int shortForm, int local, ByteArrayOutputStream code) {
+        if (local <= 3) {
+            code.write(shortForm + local);
+        }
+        else if (local <= 0xFF) {
+            code.write(instruction);
+            code.write(local);
+        }
+        else if (local <= 0xFFFF) {
+            code.write(WIDE);
+            code.write(instruction);
+            this.WriteShort(local, code);
+        }
+        else {
+            throw new IllegalArgumentException("A segment of the block has too many registers");
+        }
+    }
+
+    /**
+     * Writes the push of an int constant in its shortest form
+     */
+    private void PushInt(int value, ByteArrayOutputStream code) {
+        if (value >= -1 && value <= 5) {
+            code.write(ICONST_0 + value);
+        }
+        else if (value == (byte) value) {
+            code.write(BIPUSH);
+            code.write(value);
+        }
+        else if (value == (short) value) {
+            code.write(SIPUSH);
+            this.WriteShort(value, code);
+        }
+        else {
+            int index = this.IntegerEntry(value);
+            if (index <= 0xFF) {
+                code.write(LDC);
+                code.write(index);
+            }
+            else {
+                code.write(LDC_W);
+                this.WriteShort(index, code);
+            }
+        }
+    }
+
+    /**
+     * Writes the low 16 bits of a value, big endian
+     */
+    private void WriteShort(int value, ByteArrayOutputStream out) {
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * @return the index of a CONSTANT_Utf8 entry, added if it isn't in the pool
+     */
+    private int Utf8Entry(String value) {
+        Integer index = this.poolIndices.get("Utf8 " + value);
+        if (index != null)
+            return index;
+        try {
+            DataOutputStream out = new DataOutputStream(this.pool);
+            out.writeByte(1);
+            out.writeUTF(value);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this.NewEntry("Utf8 " + value, 1);
+    }
+
+    /**
+     * @return the index of a CONSTANT_Integer entry, added if it isn't in the pool
+     */
+    private int IntegerEntry(int value) {
+        Integer index = this.poolIndices.get("Integer " + value);
+        if (index != null)
+            return index;
+        this.pool.write(3);
+        this.WriteShort(value >>> 16, this.pool);
+        this.WriteShort(value, this.pool);
+        return this.NewEntry("Integer " + value, 1);
+    }
+
+    /**
+     * @return the index of a CONSTANT_Class entry, added if it isn't in the pool
+     */
+    private int ClassEntry(String name) {
+        Integer index = this.poolIndices.get("Class " + name);
+        if (index != null)
+            return index;
+        int nameIndex = this.Utf8Entry(name);
+        this.pool.write(7);
+        this.WriteShort(nameIndex, this.pool);
+        return this.NewEntry("Class " + name, 1);
+    }
+
+    /**
+     * @param tag 10 for a CONSTANT_Methodref, 11 for a CONSTANT_InterfaceMethodref
+     * @return the index of the member reference entry, added if it isn't in the pool
+     */
+    private int MemberEntry(int tag, String owner, String name, String descriptor) {
+        String key = "Member " + owner + "." + name + descriptor;
+        Integer index = this.poolIndices.get(key);
+        if (index != null)
+            return index;
+        int classIndex = this.ClassEntry(owner);
+        int nameIndex = this.Utf8Entry(name);
+        int descriptorIndex = this.Utf8Entry(descriptor);
+        this.pool.write(12); // CONSTANT_NameAndType
+        this.WriteShort(nameIndex, this.pool);
+        this.WriteShort(descriptorIndex, this.pool);
+        int nameAndType = this.NewEntry("NameAndType " + name + descriptor + " " + owner, 1);
+        this.pool.write(tag);
+        this.WriteShort(classIndex, this.pool);
+        this.WriteShort(nameAndType, this.pool);
+        return this.NewEntry(key, 1);
+    }
+
+    /**
+     * Records the entry just written to the pool
+     *
+     * @param key the kind and value of the entry
+     * @param slots the number of pool indices the entry takes
+     * @return the index of the entry
+     */
+    private int NewEntry(String key, int slots) {
+        int index = this.poolCount;
+        this.poolCount += slots;
+        this.poolIndices.put(key, index);
+        return index;
+    }
+}
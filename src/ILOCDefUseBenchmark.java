@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks ILOCDefUseIndex against a brute force scan of the IR, including after random inserts
+ * and removes, then times building the index.
+ */
+public class ILOCDefUseBenchmark {
+
+    /**
+     * The number of operations in the block of distinct registers that is timed
+     */
+    private static final int DISTINCT_OPS = 400_000;
+
+    /**
+     * The number of operations in the random block that edits are timed on
+     */
+    private static final int EDITED_OPS = 400_000;
+
+    /**
+     * The number of operations inserted and removed again when timing edits that walk through
+     * the block. Ten times fewer are timed at random places, which each move the gap further
+     */
+    private static final int EDITS = 20_000;
+
+    /**
+     * Checks the index on random blocks, then times building it and editing it
+     * @param args ILOC files to time building the index on, besides a block of distinct registers
+     */
+    public static void main(String[] args) {
+        if (!checkRandomBlocks(3000, 3)) {
+            System.err.println("The def-use index disagrees with the brute force scan, not timing it");
+            return;
+        }
+        System.out.println("The def-use index agrees with the brute force scan");
+
+        List<String> names = new ArrayList<>();
+        List<List<Integer[]>> blocks = new ArrayList<>();
+        for (String filePath : args) {
+            List<Integer[]> iRep = ILOCBenchmark.ParseFile(filePath);
+            if (iRep == null) {
+                System.err.println(filePath + ": the file has errors, not timing it");
+                continue;
+            }
+            names.add(filePath);
+            blocks.add(iRep);
+        }
+        List<Integer[]> distinct = new ArrayList<>(); // one register per operation, the biggest register table
+        for (int op = 0; op < DISTINCT_OPS; op++) {
+            Integer[] iRepElement = new Integer[13];
+            iRepElement[0] = ILOCInterpreter.LOADI;
+            iRepElement[1] = op;
+            iRepElement[9] = op;
+            distinct.add(iRepElement);
+        }
+        names.add(DISTINCT_OPS + " distinct registers");
+        blocks.add(distinct);
+
+        for (int i = 0; i < blocks.size(); i++) {
+            List<Integer[]> iRep = blocks.get(i);
+            long nanos = ILOCBenchmark.Best(3, 5, () -> time(iRep));
+            System.out.printf("%s: %d operations indexed in %.2f ms%n", names.get(i), iRep.size(), nanos / 1e6);
+        }
+
+        Random random = new Random(4);
+        List<Integer[]> edited = new ArrayList<>(); // few registers, so each one is redefined often
+        for (int op = 0; op < EDITED_OPS; op++) {
+            edited.add(randomOp(random));
+        }
+        for (boolean inOrder : new boolean[]{true, false}) {
+            int edits = inOrder ? EDITS : EDITS / 10;
+            long nanos = ILOCBenchmark.Best(3, 5, () -> timeEdits(edited, edits, inOrder));
+            System.out.printf("%d operations: %d inserts and removes %s in %.2f ms%n", edited.size(), edits,
+                    inOrder ? "walking through the block" : "at random places", nanos / 1e6);
+        }
+    }
+
+    /**
+     * Checks the index on random blocks, and again after each of 40 random inserts and removes
+     * @param count the number of blocks to check
+     * @param seed the random seed
+     * @return whether the index agreed with the brute force scan every time
+     */
+    private static boolean checkRandomBlocks(int count, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            List<Integer[]> iRep = new ArrayList<>();
+            int length = random.nextInt(30);
+            for (int op = 0; op < length; op++) {
+                iRep.add(randomOp(random));
+            }
+            ILOCDefUseIndex index = new ILOCDefUseIndex(iRep);
+            if (!checkEquivalent(iRep, index, "Random block " + i))
+                return false;
+
+            for (int edit = 0; edit < 40; edit++) {
+                String description;
+                if (!iRep.isEmpty() && random.nextBoolean()) {
+                    int op = random.nextInt(iRep.size());
+                    iRep.remove(op);
+                    index.RemoveOp(op);
+                    description = "removing op " + op;
+                }
+                else {
+                    int op = random.nextInt(iRep.size() + 1);
+                    Integer[] iRepElement = randomOp(random);
+                    iRep.add(op, iRepElement);
+                    index.InsertOp(op, iRepElement);
+                    description = "inserting op " + op;
+                }
+                if (!checkEquivalent(iRep, index, "Random block " + i + " after " + description))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param random the random numbers to use
+     * @return an operation on a few registers, sometimes missing its last operand like a partial parse
+     */
+    private static Integer[] randomOp(Random random) {
+        Integer[] iRepElement = new Integer[13];
+        int opCode = random.nextInt(10);
+        iRepElement[0] = opCode;
+        iRepElement[1] = random.nextInt(5);
+        if (opCode >= ILOCInterpreter.ADD && opCode <= ILOCInterpreter.RSHIFT)
+            iRepElement[5] = random.nextInt(5);
+        if (opCode < ILOCInterpreter.OUTPUT && random.nextInt(20) != 0)
+            iRepElement[9] = random.nextInt(5);
+        return iRepElement;
+    }
+
+    /**
+     * @param iRep the IR
+     * @param index the index to check
+     * @param name what to print if the index is wrong
+     * @return whether every answer of the index matches a scan of the IR
+     */
+    private static boolean checkEquivalent(List<Integer[]> iRep, ILOCDefUseIndex index, String name) {
+        if (index.Size() != iRep.size()) {
+            System.err.println(name + ": size " + index.Size() + ", expected " + iRep.size());
+            return false;
+        }
+        for (int op = 0; op < iRep.size(); op++) {
+            for (int operand = 0; operand < 3; operand++) {
+                int register = register(iRep, op, operand);
+                int[] expected = {register, -1, -1, -1};
+                if (register >= 0) {
+                    boolean def = kind(iRep.get(op)[0], operand) == 2;
+                    expected[1] = def ? op : previousDef(iRep, op, register);
+                    boolean redefined = !def && defines(iRep, op, register); // a use in an op that redefines it
+                    expected[2] = redefined ? -1 : nextUse(iRep, op, register);
+                    expected[3] = redefined ? op : nextDef(iRep, op, register);
+                }
+                int[] actual = {index.Register(op, operand), index.ReachingDef(op, operand),
+                        index.NextUse(op, operand), index.NextDef(op, operand)};
+                if (register >= 0 ? !Arrays.equals(expected, actual) : actual[0] != -1) {
+                    System.err.println(name + ": op " + op + " operand " + operand + " gives register, reaching def,"
+                            + " next use, next def " + Arrays.toString(actual)
+                            + ", expected " + Arrays.toString(expected));
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param opCode an opcode
+     * @param operand the operand, 0 to 2
+     * @return 1 if the operand is a register the operation uses, 2 if it defines it, 0 otherwise
+     */
+    private static int kind(int opCode, int operand) {
+        switch (opCode) {
+            case ILOCInterpreter.LOAD:
+                return operand == 0 ? 1 : operand == 2 ? 2 : 0;
+            case ILOCInterpreter.LOADI:
+                return operand == 2 ? 2 : 0;
+            case ILOCInterpreter.STORE:
+                return operand == 1 ? 0 : 1;
+            case ILOCInterpreter.ADD: case ILOCInterpreter.SUB: case ILOCInterpreter.MULT:
+            case ILOCInterpreter.LSHIFT: case ILOCInterpreter.RSHIFT:
+                return operand == 2 ? 2 : 1;
+            default: // output, nop
+                return 0;
+        }
+    }
+
+    /**
+     * @return the register of the operand, -1 if it isn't a register or is missing
+     */
+    private static int register(List<Integer[]> iRep, int op, int operand) {
+        Integer[] iRepElement = iRep.get(op);
+        Integer value = iRepElement[operand * 4 + 1];
+        return value == null || kind(iRepElement[0], operand) == 0 ? -1 : value;
+    }
+
+    /**
+     * @return whether the operation defines the register
+     */
+    private static boolean defines(List<Integer[]> iRep, int op, int register) {
+        return kind(iRep.get(op)[0], 2) == 2 && register(iRep, op, 2) == register;
+    }
+
+    /**
+     * @return whether the operation uses the register
+     */
+    private static boolean uses(List<Integer[]> iRep, int op, int register) {
+        for (int operand = 0; operand < 3; operand++) {
+            if (kind(iRep.get(op)[0], operand) == 1 && register(iRep, op, operand) == register)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the last operation before op defining the register, -1 if none
+     */
+    private static int previousDef(List<Integer[]> iRep, int op, int register) {
+        for (int before = op - 1; before >= 0; before--) {
+            if (defines(iRep, before, register))
+                return before;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first operation after op using the register before it's redefined, -1 if none
+     */
+    private static int nextUse(List<Integer[]> iRep, int op, int register) {
+        for (int after = op + 1; after < iRep.size(); after++) {
+            if (uses(iRep, after, register))
+                return after;
+            if (defines(iRep, after, register))
+                return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the first operation after op defining the register, -1 if none
+     */
+    private static int nextDef(List<Integer[]> iRep, int op, int register) {
+        for (int after = op + 1; after < iRep.size(); after++) {
+            if (defines(iRep, after, register))
+                return after;
+        }
+        return -1;
+    }
+
+    /**
+     * @param iRep the IR to index, which isn't changed
+     * @param edits the number of operations to insert
+     * @param inOrder whether the edits walk through the block in order, or go to random places
+     * @return the time taken to insert the operations into the index and remove each again,
+     *         in nanoseconds
+     */
+    private static long timeEdits(List<Integer[]> iRep, int edits, boolean inOrder) {
+        ILOCDefUseIndex index = new ILOCDefUseIndex(iRep);
+        Random random = new Random(5);
+        Integer[][] inserted = new Integer[edits][];
+        for (int edit = 0; edit < edits; edit++) {
+            inserted[edit] = randomOp(random);
+        }
+
+        long start = System.nanoTime();
+        for (int edit = 0; edit < edits; edit++) {
+            int op = inOrder ? (int) ((long) edit * iRep.size() / edits) : random.nextInt(iRep.size());
+            index.InsertOp(op, inserted[edit]);
+            index.RemoveOp(op);
+        }
+        long nanos = System.nanoTime() - start;
+        if (index.Size() != iRep.size())
+            System.err.println("The index lost operations");
+        return nanos;
+    }
+
+    /**
+     * @param iRep the IR to index
+     * @return the time taken to build the index, in nanoseconds
+     */
+    private static long time(List<Integer[]> iRep) {
+        long start = System.nanoTime();
+        ILOCDefUseIndex index = new ILOCDefUseIndex(iRep);
+        long nanos = System.nanoTime() - start;
+        if (index.Size() != iRep.size())
+            System.err.println("The index lost operations");
+        return nanos;
+    }
+}
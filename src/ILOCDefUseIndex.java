@@ -0,0 +1,509 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index of the def-use chains of a block of ILOC, for answering register questions in O(1).
+ *
+ * For every operation and operand that is a register it stores, in int arrays, the operation
+ * defining the value the operand holds (the reaching definition), the next operation that uses
+ * that value, and the next operation that redefines the register. Operands are numbered 0 to 2,
+ * for IR indices 1, 5 and 9. Every query answers -1 when there is no such operation, or when the
+ * operand is not a register.
+ *
+ * Operations are stored under ids that don't change when other operations are inserted or
+ * removed, and the links between them are ids, so an edit never renumbers them. The order of the
+ * ids is kept in a gap buffer, with the gap at the last edit. An edit moves the gap, which costs
+ * O(number of operations between it and the last edit), then relinks each register the operation
+ * touches, which costs O(number of operations between the definitions of that register on either
+ * side). Edits made walking through the block in order therefore don't depend on its size.
+ */
+public class ILOCDefUseIndex {
+
+    /**
+     * Operand kinds, see OperandKind
+     */
+    static final int NONE = 0, USE = 1, DEF = 2;
+
+    /**
+     * The opcode of each operation, by id
+     */
+    private int[] opCodes;
+
+    /**
+     * The register of each operand (id * 3 + operand), -1 if it isn't a register
+     */
+    private int[] registers;
+
+    /**
+     * The id of the reaching definition of each operand. A definition is its own reaching definition
+     */
+    private int[] reachingDefs;
+
+    /**
+     * The id of the next operation using the value of each operand, before the register is redefined
+     */
+    private int[] nextUses;
+
+    /**
+     * The id of the next operation redefining the register of each operand. For a use, this can
+     * be its own operation
+     */
+    private int[] nextDefs;
+
+    /**
+     * The ids in block order, with a gap of free entries from gapStart to gapEnd
+     */
+    private int[] order;
+
+    /**
+     * The index in order of each id
+     */
+    private int[] orderSlots;
+
+    /**
+     * The first free entry of order, which is also the position of the operation after the gap
+     */
+    private int gapStart;
+
+    /**
+     * The entry of order after the gap
+     */
+    private int gapEnd;
+
+    /**
+     * Ids of removed operations, to be reused
+     */
+    private int[] freeIds;
+
+    /**
+     * The number of ids in freeIds
+     */
+    private int freeCount;
+
+    /**
+     * The number of operations indexed
+     */
+    private int opCount;
+
+    /**
+     * A number for each register seen, to index walkNextUses and walkNextDefs
+     */
+    private ILOCIntMap registerNumbers;
+
+    /**
+     * For each register number, the id of the next use found so far while walking backwards
+     */
+    private int[] walkNextUses;
+
+    /**
+     * For each register number, the id of the next definition found so far while walking backwards
+     */
+    private int[] walkNextDefs;
+
+    /**
+     * The number of registers numbered in registerNumbers
+     */
+    private int registerCount;
+
+    /**
+     * Builds the index over an IR in one backwards pass
+     *
+     * @param iRep the IR, as built by ILOCParser
+     */
+    public ILOCDefUseIndex(List<Integer[]> iRep) {
+        this.opCount = iRep.size();
+        int capacity = Math.max(16, this.opCount);
+        this.opCodes = new int[capacity];
+        this.registers = new int[capacity * 3];
+        this.reachingDefs = new int[capacity * 3];
+        this.nextUses = new int[capacity * 3];
+        this.nextDefs = new int[capacity * 3];
+        this.order = new int[capacity];
+        this.orderSlots = new int[capacity];
+        this.freeIds = new int[capacity];
+        this.freeCount = 0;
+
+        int op = 0;
+        for (Integer[] iRepElement : iRep) { // ids start out in block order
+            this.SetOp(op, iRepElement);
+            this.order[op] = op;
+            this.orderSlots[op] = op;
+            op++;
+        }
+        this.gapStart = this.opCount;
+        this.gapEnd = capacity;
+        Arrays.fill(this.reachingDefs, -1);
+
+        this.registerNumbers = new ILOCIntMap(this.opCount);
+        this.walkNextUses = new int[16];
+        this.walkNextDefs = new int[16];
+        this.registerCount = 0;
+        for (op = this.opCount - 1; op >= 0; op--) {
+            this.LinkOp(op, -1);
+        }
+    }
+
+    /**
+     * @return the number of operations indexed
+     */
+    public int Size() {
+        return this.opCount;
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param operand the operand, 0 to 2
+     * @return the register of the operand, -1 if it isn't a register
+     */
+    public int Register(int op, int operand) {
+        return this.registers[this.Slot(op, operand)];
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param operand the operand, 0 to 2
+     * @return whether the operand is a register the operation defines
+     */
+    public boolean IsDef(int op, int operand) {
+        int slot = this.Slot(op, operand);
+        return this.registers[slot] >= 0 && OperandKind(this.opCodes[slot / 3], operand) == DEF;
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param operand the operand, 0 to 2
+     * @return the operation defining the operand's value (op itself for a definition),
+     *         -1 if the value is defined before the block
+     */
+    public int ReachingDef(int op, int operand) {
+        return this.Position(this.reachingDefs[this.Slot(op, operand)]);
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param operand the operand, 0 to 2
+     * @return the next operation after op that uses the operand's value, -1 if there is none
+     */
+    public int NextUse(int op, int operand) {
+        return this.Position(this.nextUses[this.Slot(op, operand)]);
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param operand the operand, 0 to 2
+     * @return the next operation that redefines the operand's register, -1 if there is none.
+     *         For a use, this is op itself if op also defines the register
+     */
+    public int NextDef(int op, int operand) {
+        return this.Position(this.nextDefs[this.Slot(op, operand)]);
+    }
+
+    /**
+     * Updates the index for an operation inserted into the IR at index.
+     * Only the chains of the registers the operation touches are relinked.
+     *
+     * @param index the index the operation was inserted at
+     * @param iRepElement the inserted IR element
+     */
+    public void InsertOp(int index, Integer[] iRepElement) {
+        if (index < 0 || index > this.opCount)
+            throw new IndexOutOfBoundsException("Operation " + index + " out of " + this.opCount);
+        if (this.gapStart == this.gapEnd)
+            this.Grow();
+
+        this.MoveGap(index);
+        int id = this.freeCount > 0 ? this.freeIds[--this.freeCount] : this.opCount;
+        this.order[this.gapStart] = id;
+        this.orderSlots[id] = this.gapStart;
+        this.gapStart++;
+        this.opCount++;
+
+        this.SetOp(id, iRepElement);
+        for (int operand = 0; operand < 3; operand++) {
+            this.reachingDefs[id * 3 + operand] = -1;
+            this.nextUses[id * 3 + operand] = -1;
+            this.nextDefs[id * 3 + operand] = -1;
+        }
+        for (int operand = 0; operand < 3; operand++) {
+            int register = this.registers[id * 3 + operand];
+            if (register >= 0)
+                this.Relink(register, index);
+        }
+    }
+
+    /**
+     * Updates the index for an operation removed from the IR at index.
+     * Only the chains of the registers the operation touched are relinked.
+     *
+     * @param index the index the operation was removed from
+     */
+    public void RemoveOp(int index) {
+        if (index < 0 || index >= this.opCount)
+            throw new IndexOutOfBoundsException("Operation " + index + " out of " + this.opCount);
+
+        this.MoveGap(index);
+        int id = this.order[this.gapEnd];
+        this.gapEnd++;
+        this.opCount--;
+        this.freeIds[this.freeCount++] = id;
+
+        for (int operand = 0; operand < 3; operand++) {
+            int register = this.registers[id * 3 + operand];
+            if (register >= 0)
+                this.Relink(register, index);
+        }
+    }
+
+    /**
+     * @param opCode an opcode
+     * @param operand the operand, 0 to 2
+     * @return whether the operand of an operation with the opcode is used, defined or neither
+     */
+    static int OperandKind(int opCode, int operand) {
+        switch (opCode) {
+            case ILOCInterpreter.LOAD:
+                return operand == 0 ? USE : operand == 2 ? DEF : NONE;
+            case ILOCInterpreter.LOADI:
+                return operand == 2 ? DEF : NONE;
+            case ILOCInterpreter.STORE:
+                return operand == 1 ? NONE : USE;
+            case ILOCInterpreter.ADD: case ILOCInterpreter.SUB: case ILOCInterpreter.MULT:
+            case ILOCInterpreter.LSHIFT: case ILOCInterpreter.RSHIFT:
+                return operand == 2 ? DEF : USE;
+            default: // output, nop
+                return NONE;
+        }
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param operand the operand, 0 to 2
+     * @return the index of the operand in the per operand arrays
+     */
+    private int Slot(int op, int operand) {
+        if (op < 0 || op >= this.opCount)
+            throw new IndexOutOfBoundsException("Operation " + op + " out of " + this.opCount);
+        return this.IdAt(op) * 3 + operand;
+    }
+
+    /**
+     * @param op the index of an operation
+     * @return the id of the operation
+     */
+    private int IdAt(int op) {
+        return this.order[op < this.gapStart ? op : op + this.gapEnd - this.gapStart];
+    }
+
+    /**
+     * @param id the id of an operation, or -1
+     * @return the index of the operation, -1 for -1
+     */
+    private int Position(int id) {
+        if (id < 0)
+            return -1;
+        int orderSlot = this.orderSlots[id];
+        return orderSlot < this.gapStart ? orderSlot : orderSlot - (this.gapEnd - this.gapStart);
+    }
+
+    /**
+     * Stores the opcode and registers of an IR element
+     * @param id the id of the operation
+     * @param iRepElement the IR element
+     */
+    private void SetOp(int id, Integer[] iRepElement) {
+        this.opCodes[id] = iRepElement[0];
+        for (int operand = 0; operand < 3; operand++) {
+            Integer value = iRepElement[operand * 4 + 1]; // IR indices 1, 5 and 9
+            boolean isRegister = value != null && OperandKind(iRepElement[0], operand) != NONE;
+            this.registers[id * 3 + operand] = isRegister ? value : -1;
+        }
+    }
+
+    /**
+     * Links the operands of one operation while walking backwards, using walkNextUses and
+     * walkNextDefs. A definition also sets itself as the reaching definition of every later use
+     * of its value.
+     *
+     * @param id the id of the operation
+     * @param onlyRegister the register to link, or -1 for every register
+     */
+    private void LinkOp(int id, int onlyRegister) {
+        int opCode = this.opCodes[id];
+
+        // the definition happens after the uses in the same operation, so link it first
+        for (int operand = 0; operand < 3; operand++) {
+            int slot = id * 3 + operand;
+            int register = this.registers[slot];
+            if (register < 0 || (onlyRegister >= 0 && register != onlyRegister)
+                    || OperandKind(opCode, operand) != DEF)
+                continue;
+            int number = this.RegisterNumber(register);
+            this.reachingDefs[slot] = id;
+            this.nextUses[slot] = this.walkNextUses[number];
+            this.nextDefs[slot] = this.walkNextDefs[number];
+            for (int use = this.nextUses[slot]; use >= 0; use = this.nextUses[this.UseSlot(use, register)]) {
+                for (int useOperand = 0; useOperand < 3; useOperand++) {
+                    if (this.registers[use * 3 + useOperand] == register
+                            && OperandKind(this.opCodes[use], useOperand) == USE)
+                        this.reachingDefs[use * 3 + useOperand] = id;
+                }
+            }
+            this.walkNextUses[number] = -1;
+            this.walkNextDefs[number] = id;
+        }
+
+        for (int operand = 0; operand < 3; operand++) {
+            int slot = id * 3 + operand;
+            int register = this.registers[slot];
+            if (register < 0 || (onlyRegister >= 0 && register != onlyRegister)
+                    || OperandKind(opCode, operand) != USE)
+                continue;
+            int number = this.RegisterNumber(register);
+            this.nextUses[slot] = this.walkNextUses[number];
+            this.nextDefs[slot] = this.walkNextDefs[number];
+        }
+        for (int operand = 0; operand < 3; operand++) {
+            int register = this.registers[id * 3 + operand];
+            if (register < 0 || (onlyRegister >= 0 && register != onlyRegister)
+                    || OperandKind(opCode, operand) != USE)
+                continue;
+            this.walkNextUses[this.RegisterNumber(register)] = id;
+        }
+    }
+
+    /**
+     * @param id the id of an operation
+     * @param register the register
+     * @return whether the operation uses the register
+     */
+    private boolean Uses(int id, int register) {
+        for (int operand = 0; operand < 3; operand++) {
+            if (this.registers[id * 3 + operand] == register && OperandKind(this.opCodes[id], operand) == USE)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param id the id of an operation that uses the register
+     * @param register the register
+     * @return the slot of the first operand of the operation that uses the register
+     */
+    private int UseSlot(int id, int register) {
+        for (int operand = 0; operand < 3; operand++) {
+            if (this.registers[id * 3 + operand] == register && OperandKind(this.opCodes[id], operand) == USE)
+                return id * 3 + operand;
+        }
+        throw new IllegalStateException("Operation " + this.Position(id) + " does not use r" + register);
+    }
+
+    /**
+     * Relinks the chains of one register around an operation that was inserted or removed.
+     * Only the operations between the definitions of the register on either side change.
+     *
+     * @param register the register to relink
+     * @param index where the operation was inserted or removed
+     */
+    private void Relink(int register, int index) {
+        int from = index - 1;
+        while (from > 0 && !this.Defines(from, register))
+            from--;
+        from = Math.max(from, 0);
+        int to = index + 1;
+        while (to < this.opCount && !this.Defines(to, register))
+            to++;
+        to = Math.min(to, this.opCount);
+
+        // uses of the value from before the region keep their reaching definition,
+        // while the uses in the definition that ends the region are relinked
+        int start = from > 0 && this.Defines(from, register) ? from + 1 : from;
+        for (int op = start; op <= to && op < this.opCount; op++) {
+            int id = this.IdAt(op);
+            for (int operand = 0; operand < 3; operand++) {
+                if (this.registers[id * 3 + operand] == register && OperandKind(this.opCodes[id], operand) == USE)
+                    this.reachingDefs[id * 3 + operand] = -1;
+            }
+        }
+
+        int number = this.RegisterNumber(register);
+        int toId = to < this.opCount ? this.IdAt(to) : -1;
+        this.walkNextUses[number] = toId >= 0 && this.Uses(toId, register) ? toId : -1;
+        this.walkNextDefs[number] = toId;
+        for (int op = to - 1; op >= from; op--) {
+            this.LinkOp(this.IdAt(op), register);
+        }
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param register the register
+     * @return whether the operation defines the register
+     */
+    private boolean Defines(int op, int register) {
+        if (op >= this.opCount)
+            return false;
+        int id = this.IdAt(op);
+        return this.registers[id * 3 + 2] == register && OperandKind(this.opCodes[id], 2) == DEF;
+    }
+
+    /**
+     * @param register a register
+     * @return its number for walkNextUses and walkNextDefs, numbering it if it is new
+     */
+    private int RegisterNumber(int register) {
+        int number = this.registerNumbers.Get(register, -1);
+        if (number < 0) {
+            number = this.registerCount++;
+            this.registerNumbers.Put(register, number);
+            if (number == this.walkNextUses.length) {
+                this.walkNextUses = Arrays.copyOf(this.walkNextUses, number * 2);
+                this.walkNextDefs = Arrays.copyOf(this.walkNextDefs, number * 2);
+            }
+            this.walkNextUses[number] = -1;
+            this.walkNextDefs[number] = -1;
+        }
+        return number;
+    }
+
+    /**
+     * Moves the gap so that it starts at an index, moving the ids in between across it
+     *
+     * @param index the index the gap should start at
+     */
+    private void MoveGap(int index) {
+        while (this.gapStart > index) {
+            int id = this.order[--this.gapStart];
+            this.order[--this.gapEnd] = id;
+            this.orderSlots[id] = this.gapEnd;
+        }
+        while (this.gapStart < index) {
+            int id = this.order[this.gapEnd++];
+            this.order[this.gapStart] = id;
+            this.orderSlots[id] = this.gapStart++;
+        }
+    }
+
+    /**
+     * Doubles the capacity of the arrays, widening the gap
+     */
+    private void Grow() {
+        int capacity = this.opCodes.length * 2;
+        this.opCodes = Arrays.copyOf(this.opCodes, capacity);
+        this.registers = Arrays.copyOf(this.registers, capacity * 3);
+        this.reachingDefs = Arrays.copyOf(this.reachingDefs, capacity * 3);
+        this.nextUses = Arrays.copyOf(this.nextUses, capacity * 3);
+        this.nextDefs = Arrays.copyOf(this.nextDefs, capacity * 3);
+        this.orderSlots = Arrays.copyOf(this.orderSlots, capacity);
+        this.freeIds = Arrays.copyOf(this.freeIds, capacity);
+
+        int[] oldOrder = this.order;
+        int tail = oldOrder.length - this.gapEnd;
+        this.order = new int[capacity];
+        System.arraycopy(oldOrder, 0, this.order, 0, this.gapStart);
+        System.arraycopy(oldOrder, this.gapEnd, this.order, capacity - tail, tail);
+        this.gapEnd = capacity - tail;
+        for (int orderSlot = this.gapEnd; orderSlot < capacity; orderSlot++) {
+            this.orderSlots[this.order[orderSlot]] = orderSlot;
+        }
+    }
+}
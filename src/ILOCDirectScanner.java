@@ -0,0 +1,464 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A direct coded ILOC scanner. The token loop has a switch arm per DFA state with the
+ * transitions written out, instead of looking them up in the transition table.
+ *
+ * Generated by ILOCScannerGenerator from the tables in ILOCScanner. Do not edit.
+ */
+public class ILOCDirectScanner extends ILOCScanner {
+
+    /**
+     * The column of each byte, see createByteClassifierTable
+     */
+    private static final int[] BYTE_CLASSES = createByteClassifierTable();
+
+    /**
+     * The lexeme of the token being scanned, reused for every token
+     */
+    private final StringBuilder lexeme = new StringBuilder();
+
+    /**
+     * The constructor for the scanner
+     * @param filePath the absolute file to scan
+     */
+    public ILOCDirectScanner(String filePath, boolean printTokens) {
+        super(filePath, printTokens);
+    }
+
+    /**
+     * A constructor for scanning a stream
+     * @param inStream the stream to scan
+     */
+    public ILOCDirectScanner(InputStream inStream, boolean printTokens) {
+        super(inStream, printTokens);
+    }
+
+    /**
+     * A constructor for scanning a channel, such as the channel of standard input
+     * @param channel the channel to scan
+     */
+    public ILOCDirectScanner(ReadableByteChannel channel, boolean printTokens) {
+        super(channel, printTokens);
+    }
+
+    /**
+     * Gets the next word, finding the same tokens as ILOCScanner.NextPackedToken
+     * @return The next word as a packed long
+     * @throws IOException when there is an error reading from the inputstream
+     */
+    @Override
+    public long NextPackedToken() throws IOException {
+        ILOCLookaheadReader input = this.input;
+        StringBuilder lexeme = this.lexeme;
+        lexeme.setLength(0);
+        int column = 20; // the column of the last byte in the classifier table (see charTransition)
+        int state = 0;
+        int accepted = -2; // the last accepting state, -2 ('bad') if there is none yet
+        int acceptedLength = 0; // the length of the lexeme when it was accepted
+        int c;
+        input.mark();
+
+        do {
+            c = input.read();
+            lexeme.append((char) c);
+            int byteClass = BYTE_CLASSES[c + 1];
+            if (byteClass >= 0) // a byte missing from the classifier table keeps the last column
+                column = byteClass;
+            switch (state) {
+                case 0:
+                    switch (column) {
+                        case 0:
+                            state = 1;
+                            break;
+                        case 2:
+                            state = 28;
+                            break;
+                        case 3:
+                            state = 13;
+                            break;
+                        case 7:
+                            state = 8;
+                            break;
+                        case 8:
+                            state = 22;
+                            break;
+                        case 13:
+                            state = 19;
+                            break;
+                        case 14:
+                            state = 25;
+                            break;
+                        case 17:
+                            state = 34;
+                            break;
+                        case 19:
+                            return this.AcceptToken(36, lexeme.toString().trim());
+                        case 20:
+                            input.mark(); // re-mark while skipping whitespace
+                            break;
+                        case 21:
+                            state = 39;
+                            break;
+                        case 22:
+                            return this.AcceptToken(43, lexeme.toString().trim());
+                        case 23:
+                            state = 37;
+                            accepted = 37;
+                            acceptedLength = lexeme.length();
+                            input.mark();
+                            break;
+                        case 24:
+                            return this.AcceptToken(42, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 1:
+                    switch (column) {
+                        case 1:
+                            state = 2;
+                            break;
+                        case 5:
+                            state = 6;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 2:
+                    switch (column) {
+                        case 2:
+                            state = 3;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 3:
+                    switch (column) {
+                        case 3:
+                            state = 4;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 4:
+                    switch (column) {
+                        case 4:
+                            return this.AcceptToken(5, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 6:
+                    switch (column) {
+                        case 6:
+                            return this.AcceptToken(7, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 8:
+                    switch (column) {
+                        case 0:
+                            state = 14;
+                            break;
+                        case 2:
+                            state = 9;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 9:
+                    switch (column) {
+                        case 8:
+                            state = 10;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 10:
+                    switch (column) {
+                        case 9:
+                            state = 11;
+                            accepted = 11;
+                            acceptedLength = lexeme.length();
+                            input.mark();
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 11:
+                    switch (column) {
+                        case 16:
+                            return this.AcceptToken(12, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 13:
+                    switch (column) {
+                        case 0:
+                            state = 14;
+                            break;
+                        case 23:
+                            state = 38;
+                            accepted = 38;
+                            acceptedLength = lexeme.length();
+                            input.mark();
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 14:
+                    switch (column) {
+                        case 10:
+                            state = 15;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 15:
+                    switch (column) {
+                        case 11:
+                            state = 16;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 16:
+                    switch (column) {
+                        case 12:
+                            state = 17;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 17:
+                    switch (column) {
+                        case 1:
+                            return this.AcceptToken(18, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 19:
+                    switch (column) {
+                        case 5:
+                            state = 20;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 20:
+                    switch (column) {
+                        case 7:
+                            state = 21;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 21:
+                    switch (column) {
+                        case 1:
+                            return this.AcceptToken(18, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 22:
+                    switch (column) {
+                        case 9:
+                            state = 23;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 23:
+                    switch (column) {
+                        case 9:
+                            return this.AcceptToken(24, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 25:
+                    switch (column) {
+                        case 2:
+                            state = 26;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 26:
+                    switch (column) {
+                        case 15:
+                            return this.AcceptToken(27, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 28:
+                    switch (column) {
+                        case 5:
+                            state = 29;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 29:
+                    switch (column) {
+                        case 1:
+                            state = 30;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 30:
+                    switch (column) {
+                        case 15:
+                            state = 31;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 31:
+                    switch (column) {
+                        case 5:
+                            state = 32;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 32:
+                    switch (column) {
+                        case 1:
+                            return this.AcceptToken(33, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 34:
+                    switch (column) {
+                        case 18:
+                            return this.AcceptToken(35, lexeme.toString().trim());
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 37:
+                    switch (column) {
+                        case 23:
+                            accepted = 37;
+                            acceptedLength = lexeme.length();
+                            input.mark();
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 38:
+                    switch (column) {
+                        case 23:
+                            accepted = 38;
+                            acceptedLength = lexeme.length();
+                            input.mark();
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 39:
+                    switch (column) {
+                        case 21:
+                            state = 40;
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                case 40:
+                    switch (column) {
+                        case 0:
+                            break;
+                        case 1:
+                            break;
+                        case 2:
+                            break;
+                        case 3:
+                            break;
+                        case 4:
+                            break;
+                        case 5:
+                            break;
+                        case 6:
+                            break;
+                        case 7:
+                            break;
+                        case 8:
+                            break;
+                        case 9:
+                            break;
+                        case 10:
+                            break;
+                        case 11:
+                            break;
+                        case 12:
+                            break;
+                        case 13:
+                            break;
+                        case 14:
+                            break;
+                        case 15:
+                            break;
+                        case 16:
+                            break;
+                        case 17:
+                            break;
+                        case 18:
+                            break;
+                        case 19:
+                            break;
+                        case 20:
+                            break;
+                        case 21:
+                            break;
+                        case 22:
+                            return this.AcceptToken(41, lexeme.toString().trim());
+                        case 23:
+                            break;
+                        default:
+                            state = -1;
+                    }
+                    break;
+                default:
+                    state = -1;
+            }
+        } while (state != -1);
+
+        if (!input.reset() && c == '\n')
+            input.Unread(); // the mark was lost, but leave the newline for the next token
+        if (accepted >= 0)
+            return this.AcceptToken(accepted, lexeme.substring(0, acceptedLength).trim());
+        return this.ErrorToken(""); // every character read was rolled back
+    }
+}
@@ -0,0 +1,221 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A channel of the decompressed bytes of a gzip stream.
+ *
+ * Inflating runs on a helper thread that fills buffers from a small pool and queues them,
+ * while the reader empties them and hands them back, so inflating and scanning overlap.
+ */
+public class ILOCInflatingChannel implements ReadableByteChannel {
+
+    /**
+     * The size of each buffer (64 kilobytes)
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The number of buffers in the pool
+     */
+    private static final int BUFFER_COUNT = 4;
+
+    /**
+     * Buffers ready for the inflater thread to fill
+     */
+    private final BlockingQueue<byte[]> emptyBuffers;
+
+    /**
+     * Filled buffers, in order, waiting to be read
+     */
+    private final BlockingQueue<byte[]> fullBuffers;
+
+    /**
+     * The number of bytes in each filled buffer, queued alongside fullBuffers.
+     * A length of -1 marks the end of the input
+     */
+    private final BlockingQueue<Integer> fullLengths;
+
+    /**
+     * The thread doing the inflating
+     */
+    private final Thread inflaterThread;
+
+    /**
+     * Set by the inflater thread if it fails, to be rethrown to the reader
+     */
+    private volatile Throwable failure;
+
+    /**
+     * The buffer being read, null if a new one must be taken
+     */
+    private byte[] current;
+
+    /**
+     * The number of bytes in current
+     */
+    private int currentLength;
+
+    /**
+     * The index of the next byte to read in current
+     */
+    private int currentPos;
+
+    /**
+     * Whether the end of the input has been read
+     */
+    private boolean eof;
+
+    /**
+     * Whether the channel is open
+     */
+    private boolean open;
+
+    /**
+     * Creates the channel and starts inflating
+     *
+     * @param compressed the gzip compressed stream
+     */
+    public ILOCInflatingChannel(InputStream compressed) {
+        this.emptyBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        this.fullBuffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        this.fullLengths = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            this.emptyBuffers.add(new byte[BUFFER_SIZE]);
+        }
+        this.eof = false;
+        this.open = true;
+
+        this.inflaterThread = new Thread(() -> this.Inflate(compressed), "ILOC inflater");
+        this.inflaterThread.setDaemon(true);
+        this.inflaterThread.start();
+    }
+
+    /**
+     * Copies decompressed bytes into dst, waiting for the inflater thread if none are ready
+     *
+     * @param dst the buffer to copy into
+     * @return the number of bytes copied, -1 at the end of the input
+     * @throws IOException if inflating failed
+     */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (this.eof)
+            return -1;
+        if (this.current == null && !this.TakeBuffer())
+            return -1;
+
+        int count = Math.min(dst.remaining(), this.currentLength - this.currentPos);
+        dst.put(this.current, this.currentPos, count);
+        this.currentPos += count;
+        if (this.currentPos == this.currentLength) { // hand the buffer back to be refilled
+            this.emptyBuffers.add(this.current);
+            this.current = null;
+        }
+        return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    /**
+     * Stops inflating
+     */
+    @Override
+    public void close() {
+        this.open = false;
+        this.inflaterThread.interrupt();
+    }
+
+    /**
+     * Takes the next filled buffer from the inflater thread
+     *
+     * @return whether a buffer was taken, false at the end of the input
+     * @throws IOException if inflating failed
+     */
+    private boolean TakeBuffer() throws IOException {
+        try {
+            byte[] buffer = this.fullBuffers.take();
+            int length = this.fullLengths.take();
+            if (length < 0) {
+                this.eof = true;
+                if (this.failure != null)
+                    this.ThrowFailure();
+                return false;
+            }
+            this.current = buffer;
+            this.currentLength = length;
+            this.currentPos = 0;
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for decompressed input", e);
+        }
+    }
+
+    /**
+     * Inflates the whole stream into buffers from the pool. Runs on the inflater thread.
+     *
+     * @param compressed the gzip compressed stream
+     */
+    private void Inflate(InputStream compressed) {
+        byte[] buffer = null;
+        try (GZIPInputStream gzipStream = new GZIPInputStream(compressed, BUFFER_SIZE)) {
+            while (true) {
+                buffer = this.emptyBuffers.take();
+                int length = gzipStream.readNBytes(buffer, 0, buffer.length);
+                if (length == 0)
+                    break;
+                this.Queue(buffer, length);
+                buffer = null;
+            }
+        }
+        catch (InterruptedException e) {
+            return; // closed
+        }
+        catch (Throwable e) { // anything else still ends the input, or the reader would wait forever
+            this.failure = e;
+        }
+
+        try {
+            this.Queue(buffer != null ? buffer : new byte[0], -1); // the end of the input
+        }
+        catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Rethrows what the inflater thread failed with
+     *
+     * @throws IOException if inflating failed with an IOException, or with a checked exception
+     *         other than one, which is wrapped
+     */
+    private void ThrowFailure() throws IOException {
+        if (this.failure instanceof IOException)
+            throw (IOException) this.failure;
+        if (this.failure instanceof RuntimeException)
+            throw (RuntimeException) this.failure;
+        if (this.failure instanceof Error)
+            throw (Error) this.failure;
+        throw new IOException("Inflating failed", this.failure);
+    }
+
+    /**
+     * Queues a filled buffer for the reader
+     *
+     * @param buffer the buffer
+     * @param length the number of bytes in it, -1 for the end of the input
+     * @throws InterruptedException if the channel is closed while waiting
+     */
+    private void Queue(byte[] buffer, int length) throws InterruptedException {
+        // the lengths queue is filled first so the reader never sees a buffer without its length
+        this.fullLengths.put(length);
+        this.fullBuffers.put(buffer);
+    }
+}
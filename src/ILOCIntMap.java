@@ -0,0 +1,98 @@
+import java.util.Arrays;
+
+/**
+ * A map to int with open addressing, for keying on register numbers without boxing. Keys are
+ * longs so that a key can also pack several ints, such as the expressions of ILOCValueNumbering.
+ * Entries can be overwritten but not removed.
+ */
+public class ILOCIntMap {
+
+    /**
+     * Marks an empty slot
+     */
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * The keys, EMPTY for a free slot
+     */
+    private long[] keys;
+
+    /**
+     * The value of each key
+     */
+    private int[] values;
+
+    /**
+     * The number of keys in the map
+     */
+    private int size;
+
+    /**
+     * Creates an empty map
+     * @param expected the number of keys expected, to size the table
+     */
+    public ILOCIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        Arrays.fill(this.keys, EMPTY);
+        this.size = 0;
+    }
+
+    /**
+     * @param key the key, anything but Long.MIN_VALUE
+     * @param missing the value to return if the key isn't in the map
+     * @return the value of the key
+     */
+    public int Get(long key, int missing) {
+        int slot = this.Find(key);
+        return this.keys[slot] == EMPTY ? missing : this.values[slot];
+    }
+
+    /**
+     * Sets the value of a key
+     * @param key the key, anything but Long.MIN_VALUE
+     * @param value the value
+     */
+    public void Put(long key, int value) {
+        int slot = this.Find(key);
+        if (this.keys[slot] == EMPTY) {
+            this.keys[slot] = key;
+            this.size++;
+        }
+        this.values[slot] = value;
+        if (this.size * 2 > this.keys.length)
+            this.Grow();
+    }
+
+    /**
+     * @param key the key to look for
+     * @return the slot holding the key, or the empty slot where it would go
+     */
+    private int Find(long key) {
+        int mask = this.keys.length - 1;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> Integer.numberOfLeadingZeros(mask) + 32); // the top bits
+        while (this.keys[slot] != key && this.keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table and puts every key back in
+     */
+    private void Grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new long[oldKeys.length * 2];
+        this.values = new int[oldKeys.length * 2];
+        Arrays.fill(this.keys, EMPTY);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = this.Find(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+}
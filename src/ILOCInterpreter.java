@@ -0,0 +1,122 @@
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Executes a block of ILOC one operation at a time.
+ *
+ * The registers are renumbered 0 up so that they index an array. ILOCCompiler reads the same
+ * encoding to compile the block.
+ */
+public class ILOCInterpreter implements ILOCBlock {
+
+    /**
+     * Opcodes, as the scanner numbers them. The other passes over the IR use these too
+     */
+    static final int LOAD = 0, LOADI = 1, STORE = 2, ADD = 3, SUB = 4, MULT = 5,
+            LSHIFT = 6, RSHIFT = 7, OUTPUT = 8, NOP = 9;
+
+    /**
+     * The opcode of each operation
+     */
+    final int[] opCodes;
+
+    /**
+     * The three operands of each operation, operation i at 3 * i. Registers are renumbered,
+     * constants are kept as they are
+     */
+    final int[] operands;
+
+    /**
+     * The number of registers the block uses
+     */
+    final int registerCount;
+
+    /**
+     * Encodes a block for execution
+     *
+     * @param iRep the IR of a block that ILOCParser parsed without errors
+     * @throws IllegalArgumentException if an operation is missing an operand
+     */
+    public ILOCInterpreter(List<Integer[]> iRep) {
+        int opCount = iRep.size();
+        this.opCodes = new int[opCount];
+        this.operands = new int[opCount * 3];
+        ILOCIntMap registerNumbers = new ILOCIntMap(opCount);
+        int registers = 0;
+
+        int op = 0;
+        for (Integer[] iRepElement : iRep) {
+            int opCode = iRepElement[0];
+            this.opCodes[op] = opCode;
+            for (int operand = 0; operand < 3; operand++) {
+                Integer value = iRepElement[operand * 4 + 1];
+                boolean register = ILOCDefUseIndex.OperandKind(opCode, operand) != ILOCDefUseIndex.NONE;
+                if (value == null) {
+                    if (register || (operand == 0 && (opCode == LOADI || opCode == OUTPUT)))
+                        throw new IllegalArgumentException("Operation " + op + " is missing an operand");
+                    continue;
+                }
+                if (register) {
+                    int number = registerNumbers.Get(value, -1);
+                    if (number < 0) {
+                        number = registers++;
+                        registerNumbers.Put(value, number);
+                    }
+                    value = number;
+                }
+                this.operands[op * 3 + operand] = value;
+            }
+            op++;
+        }
+        this.registerCount = registers;
+    }
+
+    /**
+     * @return the number of operations in the block
+     */
+    public int Size() {
+        return this.opCodes.length;
+    }
+
+    @Override
+    public void Run(int[] memory, IntConsumer output) {
+        int[] registers = new int[this.registerCount];
+        int[] opCodes = this.opCodes;
+        int[] operands = this.operands;
+
+        for (int op = 0, slot = 0; op < opCodes.length; op++, slot += 3) {
+            int first = operands[slot], second = operands[slot + 1], target = operands[slot + 2];
+            switch (opCodes[op]) {
+                case LOAD:
+                    registers[target] = memory[registers[first] >> 2];
+                    break;
+                case LOADI:
+                    registers[target] = first;
+                    break;
+                case STORE:
+                    memory[registers[target] >> 2] = registers[first];
+                    break;
+                case ADD:
+                    registers[target] = registers[first] + registers[second];
+                    break;
+                case SUB:
+                    registers[target] = registers[first] - registers[second];
+                    break;
+                case MULT:
+                    registers[target] = registers[first] * registers[second];
+                    break;
+                case LSHIFT:
+                    registers[target] = registers[first] << registers[second];
+                    break;
+                case RSHIFT:
+                    registers[target] = registers[first] >> registers[second];
+                    break;
+                case OUTPUT:
+                    output.accept(memory[first >> 2]);
+                    break;
+                default: // nop
+                    break;
+            }
+        }
+    }
+}
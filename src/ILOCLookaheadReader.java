@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads bytes from a channel through a fixed size direct buffer, with mark and reset.
+ *
+ * Unlike BufferedInputStream.mark(Integer.MAX_VALUE), the buffer never grows. Once the reader
+ * gets a full window past the mark, the mark is dropped and reset reports that it failed.
+ * The scanner re-marks while it skips whitespace, so only a comment longer than the window can
+ * lose its mark. The byte before the read position is always kept, so Unread can step back
+ * over the last byte read even then.
+ */
+public class ILOCLookaheadReader {
+
+    /**
+     * The default window size (64 kilobytes)
+     */
+    public static final int DEFAULT_WINDOW = 1 << 16;
+
+    /**
+     * The channel being read
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * The window of bytes read from the channel but not yet discarded
+     */
+    private final ByteBuffer window;
+
+    /**
+     * The index in the window of the next byte to read
+     */
+    private int pos;
+
+    /**
+     * The number of valid bytes in the window
+     */
+    private int limit;
+
+    /**
+     * The index in the window of the mark, -1 if there is none
+     */
+    private int markPos;
+
+    /**
+     * Whether the channel has reached the end of its input
+     */
+    private boolean eof;
+
+    /**
+     * Creates a reader with the default window size
+     * @param channel the channel to read from
+     */
+    public ILOCLookaheadReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_WINDOW);
+    }
+
+    /**
+     * Creates a reader
+     * @param channel the channel to read from
+     * @param windowSize the number of bytes kept for lookahead and rollback
+     */
+    public ILOCLookaheadReader(ReadableByteChannel channel, int windowSize) {
+        this.channel = channel;
+        this.window = ByteBuffer.allocateDirect(windowSize);
+        this.pos = 0;
+        this.limit = 0;
+        this.markPos = -1;
+        this.eof = false;
+    }
+
+    /**
+     * @return the next byte, or -1 at the end of the input
+     * @throws IOException if the channel fails to read
+     */
+    public int read() throws IOException {
+        if (this.pos == this.limit && !this.Fill())
+            return -1;
+        return this.window.get(this.pos++) & 0xFF;
+    }
+
+    /**
+     * Marks the current position to go back to with reset
+     */
+    public void mark() {
+        this.markPos = this.pos;
+    }
+
+    /**
+     * Goes back to the marked position, if the mark is still inside the window
+     * @return whether the mark was still there, false if the position didn't change
+     */
+    public boolean reset() {
+        if (this.markPos < 0)
+            return false;
+        this.pos = this.markPos;
+        return true;
+    }
+
+    /**
+     * Steps back over the last byte read
+     */
+    public void Unread() {
+        if (this.pos > 0)
+            this.pos--;
+    }
+
+    /**
+     * @return a stream of the rest of the input, starting with the bytes left in the window
+     */
+    public InputStream AsStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                return ILOCLookaheadReader.this.read();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                ILOCLookaheadReader reader = ILOCLookaheadReader.this;
+                if (length == 0)
+                    return 0;
+                if (reader.pos == reader.limit && !reader.Fill())
+                    return -1;
+                int count = Math.min(length, reader.limit - reader.pos);
+                reader.window.get(reader.pos, bytes, offset, count);
+                reader.pos += count;
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Closes the channel
+     * @throws IOException if the channel fails to close
+     */
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Discards the bytes that can no longer be reset to and reads more from the channel
+     * @return whether any bytes were read
+     * @throws IOException if the channel fails to read
+     */
+    private boolean Fill() throws IOException {
+        if (this.eof)
+            return false;
+
+        if (this.markPos == 0 && this.limit == this.window.capacity())
+            this.markPos = -1; // looked a whole window ahead, the mark can't be kept
+
+        int keepFrom = this.markPos >= 0 ? this.markPos : Math.max(this.pos - 1, 0); // keep a byte for Unread
+        if (keepFrom > 0) { // slide the kept bytes to the front
+            this.window.limit(this.limit).position(keepFrom);
+            this.window.compact();
+            this.limit -= keepFrom;
+            this.pos -= keepFrom;
+            if (this.markPos >= 0)
+                this.markPos -= keepFrom;
+        }
+
+        this.window.limit(this.window.capacity()).position(this.limit);
+        int read;
+        do {
+            read = this.channel.read(this.window);
+        } while (read == 0);
+
+        if (read < 0) {
+            this.eof = true;
+            return false;
+        }
+        this.limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,252 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An intermediate representation that keeps its operations off the heap, in a memory mapped file.
+ *
+ * Every operation takes a fixed width slot of four ints: the opcode and the three operands
+ * (IR indices 0, 1, 5 and 9). The file is mapped in segments of up to 1 gigabyte, so the heap
+ * only holds one buffer reference per segment no matter how many operations are stored. The last
+ * segment starts with a 64 kilobyte mapping that doubles as it fills, so the file stays within
+ * twice the size of what it holds and doesn't rely on the filesystem supporting sparse files.
+ * Elements are handed out as the same Integer[13] arrays the parser builds, so code written
+ * against the list IR can use this one unchanged.
+ *
+ * Java can't unmap a MappedByteBuffer explicitly. Dropped mappings, including those replaced
+ * as a segment grows, are only released when the buffers are garbage collected. Until then the
+ * file keeps its space, and on Windows it can't be deleted, so close may fail to delete it.
+ */
+public class ILOCMappedRep extends AbstractList<Integer[]> implements Closeable {
+
+    /**
+     * The bytes taken by one operation
+     */
+    private static final int SLOT_BYTES = 16;
+
+    /**
+     * The operations held by one mapped segment
+     */
+    private static final int SLOT_SHIFT = 26;
+
+    /**
+     * The most bytes in one mapped segment (1 gigabyte)
+     */
+    private static final long SEGMENT_BYTES = (long) SLOT_BYTES << SLOT_SHIFT;
+
+    /**
+     * The bytes first mapped for a new segment (64 kilobytes), doubled each time it fills
+     */
+    private static final long FIRST_MAPPING_BYTES = 1 << 16;
+
+    /**
+     * Stored in place of a null operand, since the parser leaves unused operands null
+     */
+    private static final int NULL_OPERAND = Integer.MIN_VALUE;
+
+    /**
+     * The IR index of each of the four stored ints
+     */
+    private static final int[] IR_INDICES = {0, 1, 5, 9};
+
+    /**
+     * The file the operations are stored in
+     */
+    private final Path path;
+
+    /**
+     * The channel used to map the file
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped segments, in file order. Every one but the last is SEGMENT_BYTES long
+     */
+    private final ArrayList<MappedByteBuffer> segments;
+
+    /**
+     * The number of operations stored
+     */
+    private long opCount;
+
+    /**
+     * Creates an empty mapped IR, replacing anything already in the file
+     *
+     * @param path the file to store the operations in. It is deleted on close
+     * @throws IOException if the file cannot be opened
+     */
+    public ILOCMappedRep(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.segments = new ArrayList<>();
+        this.opCount = 0;
+    }
+
+    /**
+     * @return the number of operations stored, which may be more than size() can report
+     */
+    public long LongSize() {
+        return this.opCount;
+    }
+
+    /**
+     * @param op the index of the operation
+     * @return the opcode of the operation
+     */
+    public int GetOpCode(long op) {
+        return this.GetInt(op, 0);
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param operand which operand, 0 to 2 (IR indices 1, 5 and 9)
+     * @return the operand, or null if the parser never set it
+     */
+    public Integer GetOperand(long op, int operand) {
+        int value = this.GetInt(op, operand + 1);
+        return value == NULL_OPERAND ? null : value;
+    }
+
+    /**
+     * @param op the index of the operation
+     * @return the operation as an IR element, the same shape the parser builds
+     */
+    public Integer[] GetOp(long op) {
+        Integer[] iRepElement = new Integer[13];
+        for (int i = 0; i < IR_INDICES.length; i++) {
+            int value = this.GetInt(op, i);
+            iRepElement[IR_INDICES[i]] = value == NULL_OPERAND ? null : value;
+        }
+        return iRepElement;
+    }
+
+    @Override
+    public Integer[] get(int index) {
+        return this.GetOp(index);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(this.opCount, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Appends an operation to the end of the file
+     *
+     * @param iRepElement the IR element to store
+     * @return true
+     */
+    @Override
+    public boolean add(Integer[] iRepElement) {
+        long op = this.opCount;
+        this.MapSlot(op);
+        this.opCount++;
+        this.PutOp(op, iRepElement);
+        this.modCount++;
+        return true;
+    }
+
+    @Override
+    public Integer[] set(int index, Integer[] iRepElement) {
+        Integer[] old = this.GetOp(index); // also checks the index
+        this.PutOp(index, iRepElement);
+        return old;
+    }
+
+    /**
+     * Iterates with a long index so that every operation is visited, even past size()
+     * @return an iterator over all the stored operations
+     */
+    @Override
+    public Iterator<Integer[]> iterator() {
+        return new Iterator<>() {
+            private long next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < ILOCMappedRep.this.opCount;
+            }
+
+            @Override
+            public Integer[] next() {
+                if (!this.hasNext())
+                    throw new NoSuchElementException();
+                return ILOCMappedRep.this.GetOp(this.next++);
+            }
+        };
+    }
+
+    /**
+     * Closes the file and deletes it. The mappings are only released when they are garbage collected
+     * @throws IOException if the file cannot be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        this.segments.clear();
+        this.channel.close();
+        Files.deleteIfExists(this.path);
+    }
+
+    /**
+     * Writes an IR element into the slot of an operation
+     * @param op the index of the operation
+     * @param iRepElement the IR element to store
+     */
+    private void PutOp(long op, Integer[] iRepElement) {
+        MappedByteBuffer segment = this.segments.get((int) (op >>> SLOT_SHIFT));
+        int offset = (int) (op & ((1 << SLOT_SHIFT) - 1)) * SLOT_BYTES;
+        for (int i = 0; i < IR_INDICES.length; i++) {
+            Integer value = iRepElement[IR_INDICES[i]];
+            segment.putInt(offset + i * 4, value == null ? NULL_OPERAND : value);
+        }
+    }
+
+    /**
+     * @param op the index of the operation
+     * @param field which int in the slot, 0 to 3
+     * @return the int stored there
+     */
+    private int GetInt(long op, int field) {
+        if (op < 0 || op >= this.opCount)
+            throw new IndexOutOfBoundsException("Operation " + op + " out of " + this.opCount);
+        MappedByteBuffer segment = this.segments.get((int) (op >>> SLOT_SHIFT));
+        int offset = (int) (op & ((1 << SLOT_SHIFT) - 1)) * SLOT_BYTES;
+        return segment.getInt(offset + field * 4);
+    }
+
+    /**
+     * Makes sure the slot of an operation appended at the end is mapped. Maps a new segment when
+     * the last one is full, or doubles the mapping of the last segment, growing the file to fit
+     * @param op the index of the operation
+     */
+    private void MapSlot(long op) {
+        int segment = (int) (op >>> SLOT_SHIFT);
+        long end = ((op & ((1 << SLOT_SHIFT) - 1)) + 1) * SLOT_BYTES;
+        boolean mapped = segment < this.segments.size();
+        if (mapped && end <= this.segments.get(segment).capacity())
+            return;
+
+        long bytes = mapped ? Math.min(this.segments.get(segment).capacity() * 2L, SEGMENT_BYTES) : FIRST_MAPPING_BYTES;
+        try {
+            // the old mapping of a growing segment shares the file, so nothing needs copying
+            MappedByteBuffer mapping = this.channel.map(FileChannel.MapMode.READ_WRITE, segment * SEGMENT_BYTES, bytes);
+            if (mapped)
+                this.segments.set(segment, mapping);
+            else
+                this.segments.add(mapping);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -28,9 +28,9 @@ public class ILOCParser {
     String[] tokenTypeStrings;
 
     /**
-     * Keeps track of the linecount
+     * Keeps track of the linecount. A long, since a memory mapped IR can hold more lines than an int counts
      */
-    Integer lineCount;
+    long lineCount;
 
     /**
      * Keeps track of if a line ended with a new line incorrectly
@@ -48,12 +48,75 @@ public class ILOCParser {
      * Stores the line of the last printed error
      * To prevent duplicate error printing.
      */
-    int lastErrorLine;
+    long lastErrorLine;
 
     /**
-     * Total ILOC Operations
+     * Total ILOC Operations. A long for the same reason as lineCount
      */
-    int totalOps;
+    long totalOps;
+
+    /**
+     * Whether the scanner runs on its own thread, handing tokens over through tokenRing
+     */
+    boolean pipelined;
+
+    /**
+     * Whether statements are checked against the operand templates instead of the Check methods
+     */
+    boolean tableDriven;
+
+    /**
+     * Whether to run local value numbering on the IR after a successful parse
+     */
+    boolean valueNumbering;
+
+    /**
+     * Whether the last parse found no errors
+     */
+    boolean success;
+
+    /**
+     * The token types expected after each opcode token type (MEMOP, LOADI, ARITHOP, OUTPUT, NOP),
+     * before the statement ends
+     */
+    private static final int[][] OPERAND_TEMPLATES = {
+            {6, 8, 6},       // MEMOP   REG => REG
+            {5, 8, 6},       // LOADI   CONSTANT => REG
+            {6, 7, 6, 8, 6}, // ARITHOP REG , REG => REG
+            {5},             // OUTPUT  CONSTANT
+            {}               // NOP
+    };
+
+    /**
+     * The IR index each operand in OPERAND_TEMPLATES is stored at, -1 if it isn't stored
+     */
+    private static final int[][] OPERAND_IR_INDICES = {
+            {1, -1, 9},
+            {1, -1, 9},
+            {1, -1, 5, -1, 9},
+            {1},
+            {}
+    };
+
+    /**
+     * The ring the scanner thread puts tokens into when pipelined
+     */
+    private ILOCTokenRing tokenRing;
+
+    /**
+     * The batch of packed tokens most recently taken from the token ring or the scanner
+     */
+    private long[] tokenBatch;
+
+    /**
+     * The index of the next unread token in tokenBatch
+     */
+    private int batchPos;
+
+    /**
+     * The number of tokens in tokenBatch
+     */
+    private int batchLen;
 
     /**
      * Creates an ILOC Parser
@@ -61,11 +124,28 @@ public class ILOCParser {
      * @param filePath the absolute path to the file to parse
      */
     public ILOCParser(String filePath, boolean printTokens, boolean printIR) {
+        this(new ILOCScanner(filePath, printTokens), printIR);
+    }
+
+    /**
+     * Creates an ILOC Parser that reads its tokens from the given scanner,
+     * for input that does not come from a file, such as System.in
+     *
+     * @param scanner the scanner to get tokens from
+     */
+    public ILOCParser(ILOCScanner scanner, boolean printIR) {
         // create the intermediate representation as a linked list of int arrays
         this.iRep = new LinkedList<>();
         this.errNlEnd = false;
         this.printIR = printIR;
         this.totalOps = 0;
+        this.pipelined = false;
+        this.tableDriven = false;
+        this.valueNumbering = false;
+        this.success = false;
+        this.tokenBatch = new long[256];
+        this.batchPos = 0;
+        this.batchLen = 0;
 
         //                                  0         1         2         3        4        5
         this.tokenTypeStrings = new String[]{"MEMOP", "LOADI", "ARITHOP", "OUTPUT", "NOP", "CONSTANT",
@@ -77,7 +157,7 @@ public class ILOCParser {
                 "rshift", "output", "nop", ",", "=>", "NOT IN LEXEME"};
         //         7         8        9    10    11        12
 
-        this.scanner = new ILOCScanner(filePath, printTokens);
+        this.scanner = scanner;
     }
 
     /**
@@ -89,6 +169,49 @@ public class ILOCParser {
         return iRep;
     }
 
+    /**
+     * Sets the list the parser builds the IR in, for example an ILOCMappedRep to keep
+     * the IR off the heap. Must be called before Parse.
+     * @param iRep the empty list to build the IR in
+     */
+    public void SetRep(List<Integer[]> iRep) {
+        this.iRep = iRep;
+    }
+
+    /**
+     * Sets whether the scanner runs on a separate thread from the parser.
+     * Must be called before Parse.
+     * @param pipelined whether to scan and parse on separate threads
+     */
+    public void SetPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Sets whether statements are checked with one loop over the operand template table
+     * instead of a Check method per opcode. Must be called before Parse.
+     * @param tableDriven whether to check statements against the operand templates
+     */
+    public void SetTableDriven(boolean tableDriven) {
+        this.tableDriven = tableDriven;
+    }
+
+    /**
+     * Sets whether to remove redundant operations from the IR with local value numbering
+     * after a successful parse. Must be called before Parse.
+     * @param valueNumbering whether to run ILOCValueNumbering on the IR
+     */
+    public void SetValueNumbering(boolean valueNumbering) {
+        this.valueNumbering = valueNumbering;
+    }
+
+    /**
+     * @return whether the last parse found no errors, so the IR is complete
+     */
+    public boolean Succeeded() {
+        return this.success;
+    }
+
     /**
      * Parses cleanly without an exception to stop the program
      */
@@ -108,15 +231,50 @@ public class ILOCParser {
      * @throws IOException if there is a read error in the input stream from the file
      */
     private void ParseException() throws IOException {
-        boolean success = true;
+        boolean success;
         this.lineCount = 1; // counts the line to return where the error was
+        if (this.pipelined)
+            this.StartScannerThread();
+
+        try {
+            if (this.tableDriven)
+                success = this.ParseTableDriven();
+            else
+                success = this.ParseWithChecks();
+        }
+        finally {
+            if (this.pipelined)
+                this.tokenRing.Close(); // stop the scanner thread if parsing ended early
+        }
+        this.success = success;
+
+        int removedOps = -1;
+        if (success && this.valueNumbering)
+            removedOps = new ILOCValueNumbering(this.iRep).Run();
+
+        if (this.printIR)
+            this.ShowRep();
+        if (success)
+            System.out.println("Parse success with " + this.totalOps + " operations total.");
+        if (removedOps >= 0)
+            System.out.println("Value numbering removed " + removedOps + " operations.");
+    }
+
+    /**
+     * Parses every statement with the Check method for its opcode
+     *
+     * @return whether every statement was correct
+     * @throws IOException if there is a read error in the input stream from the file
+     */
+    private boolean ParseWithChecks() throws IOException {
+        boolean success = true;
 
         // start with "NEWLINE". So parser can check that each op starts with a newline.
         Integer[] nextToken = new Integer[]{-1, -1};
         while (nextToken[0] != 9) { // keep going until end of file
             // keep track of the line for correct error product
 
-            nextToken = this.scanner.NextToken();
+            nextToken = this.NextToken();
             //System.out.println(tokenTypeStrings[nextToken[0]]); // for debugging purposes
             // add reg and constant case
             switch (nextToken[0]) {
@@ -203,10 +361,145 @@ public class ILOCParser {
                     break;
             }
         }
-        if (this.printIR)
-            this.ShowRep();
-        if (success)
-            System.out.println("Parse success with " + this.totalOps + " operations total.");
+        return success;
+    }
+
+    /**
+     * Parses every statement by checking it against its operand template
+     *
+     * @return whether every statement was correct
+     * @throws IOException if there is a read error in the input stream from the file
+     */
+    private boolean ParseTableDriven() throws IOException {
+        boolean success = true;
+        int tokenType = -1;
+        while (tokenType != 9) { // keep going until end of file
+            long packedToken = this.NextPackedToken();
+            tokenType = ILOCScanner.TokenType(packedToken);
+            switch (tokenType) {
+                // MEMOP, LOADI, ARITHOP, OUTPUT, NOP
+                case 0: case 1: case 2: case 3: case 4:
+                    if (!this.TemplateCheck(tokenType, ILOCScanner.TokenValue(packedToken))) {
+                        if (this.lastErrorLine != this.lineCount)
+                            System.err.println("" + this.lineCount + ": Incorrect " + tokenTypeStrings[tokenType] + " syntax");
+                        this.lastErrorLine = this.lineCount;
+                        success = false;
+                    } else {
+                        this.lineCount++;
+                        this.totalOps++;
+                    }
+                    break;
+                // EOF
+                case 9:
+                    break;
+                // COMMENT, NEWLINE
+                case 10: case 11:
+                    this.lineCount++;
+                    break;
+                default:
+                    if (errNlEnd) {
+                        lineCount ++;
+                        errNlEnd = false;
+                    }
+                    if (this.lastErrorLine != this.lineCount)
+                        System.err.println("" + this.lineCount + ": Statement must start with an Opcode");
+                    this.lastErrorLine = this.lineCount;
+                    success = false;
+                    break;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Check that a statement follows the operand template of its opcode.
+     * The IR element is built the same way as the Check methods build it.
+     *
+     * @param opType the token type of the opcode (0 - 4)
+     * @param opCode the opcode
+     * @return whether or not syntax is correct
+     * @throws IOException if the scanner's input stream throws an exception
+     */
+    private boolean TemplateCheck(int opType, int opCode) throws IOException {
+        int[] template = OPERAND_TEMPLATES[opType];
+        int[] irIndices = OPERAND_IR_INDICES[opType];
+        Integer[] iRepElement = new Integer[13];
+        iRepElement[0] = opCode; // store the opCode as the first element
+        if (template.length == 0)
+            this.iRep.add(iRepElement);
+
+        for (int i = 0; i < template.length; i++) {
+            long packedToken = this.NextPackedToken();
+            int tokenType = ILOCScanner.TokenType(packedToken);
+            if (irIndices[i] >= 0)
+                iRepElement[irIndices[i]] = ILOCScanner.TokenValue(packedToken);
+            if (i == template.length - 1) // the last operand is always stored
+                this.iRep.add(iRepElement);
+            if (tokenType != template[i]) {
+                if (tokenType == 11 || tokenType == 10)
+                    errNlEnd = true;
+                return false;
+            }
+        }
+
+        int tokenType = ILOCScanner.TokenType(this.NextPackedToken());
+        return tokenType == 11 || tokenType == 9 || tokenType == 10; // check ends with nextline
+    }
+
+    /**
+     * Starts scanning the whole input on its own thread. The tokens are put into the
+     * token ring for NextToken to take in batches.
+     */
+    private void StartScannerThread() {
+        this.tokenRing = new ILOCTokenRing(4096);
+
+        Thread scannerThread = new Thread(() -> {
+            try {
+                long packedToken;
+                do {
+                    packedToken = this.scanner.NextPackedToken();
+                } while (this.tokenRing.Put(packedToken) && ILOCScanner.TokenType(packedToken) != 9); // stop after EOF, or once the parser stops
+            }
+            catch (IOException | RuntimeException e) {
+                this.tokenRing.Fail(e); // hand it to the parser thread, or it would wait forever
+            }
+        }, "ILOC scanner");
+        scannerThread.setDaemon(true);
+        scannerThread.start();
+    }
+
+    /**
+     * Gets the next token, either straight from the scanner or from the scanner thread
+     * @return the next token as {token type, lexeme value}
+     * @throws IOException if the scanner's input stream throws an exception
+     */
+    private Integer[] NextToken() throws IOException {
+        if (!this.pipelined)
+            return this.scanner.NextToken();
+
+        long packedToken = this.NextPackedToken();
+        return new Integer[]{ILOCScanner.TokenType(packedToken), ILOCScanner.TokenValue(packedToken)};
+    }
+
+    /**
+     * Gets the next token out of the current batch, taking a new batch from the
+     * scanner thread or the scanner when it runs out. Once EOF is reached it is
+     * returned again on every call, like the scanner does
+     * @return the next token, packed by ILOCScanner.PackToken
+     * @throws IOException if the scanner's input stream throws an exception
+     */
+    private long NextPackedToken() throws IOException {
+        if (this.batchPos == this.batchLen) { // refill the batch
+            if (this.pipelined)
+                this.batchLen = this.tokenRing.TakeBatch(this.tokenBatch, this.tokenBatch.length);
+            else
+                this.batchLen = this.scanner.NextTokens(this.tokenBatch, this.tokenBatch.length);
+            this.batchPos = 0;
+        }
+        long packedToken = this.tokenBatch[this.batchPos];
+        if (ILOCScanner.TokenType(packedToken) != 9) // the scanner thread has stopped after EOF, so keep it
+            this.batchPos++;
+        return packedToken;
     }
 
     /**
@@ -225,7 +518,7 @@ public class ILOCParser {
      * @throws IOException if the scanner's input stream throws an exception
      */
     private boolean MemopCheck(int opCode) throws IOException {
-        Integer[] nextToken = this.scanner.NextToken(); // keep this for IR stuff
+        Integer[] nextToken = this.NextToken(); // keep this for IR stuff
         Integer[] iRepElement = new Integer[13];
         iRepElement[0] = opCode; // store the opCode as the first element
 
@@ -236,7 +529,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         // no need to store INTO
         if (nextToken[0] != 8) { // check that next is INTO
             if (nextToken[0] == 11 || nextToken[0] == 10)
@@ -244,7 +537,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         iRepElement[9] = nextToken[1]; // store next reg number at index 9
         this.iRep.add(iRepElement); // add the block to the IR
         if (nextToken[0] != 6) { // check that next is REG
@@ -253,7 +546,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         return nextToken[0] == 11 || nextToken[0] == 9 || nextToken[0] == 10; // check ends with nextline
     }
 
@@ -264,7 +557,7 @@ public class ILOCParser {
      * @throws IOException if the scanner's input stream throws an exception
      */
     private boolean LoadICheck(int opCode) throws IOException {
-        Integer[] nextToken = this.scanner.NextToken();
+        Integer[] nextToken = this.NextToken();
         Integer[] iRepElement = new Integer[13];
         iRepElement[0] = opCode; // store the opCode as the first element
 
@@ -275,7 +568,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         // don't store into
         if (nextToken[0] != 8) { // check next INTO
             if (nextToken[0] == 11 || nextToken[0] == 10)
@@ -283,7 +576,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         iRepElement[9] = nextToken[1]; //store the register
         this.iRep.add(iRepElement);
         if(nextToken[0] != 6) { // check next REG
@@ -292,7 +585,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         return nextToken[0] == 11 || nextToken[0] == 9 || nextToken[0] == 10; // check ends with nextline
     }
 
@@ -303,7 +596,7 @@ public class ILOCParser {
      * @throws IOException if the scanner's input stream throws an exception
      */
     private boolean ArithopCheck(int opCode) throws IOException {
-        Integer[] nextToken = this.scanner.NextToken();
+        Integer[] nextToken = this.NextToken();
         Integer[] iRepElement = new Integer[13];
         iRepElement[0] = opCode; // store the opCode as the first element
 
@@ -314,7 +607,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         // don't store comma
         if (nextToken[0] != 7) { // check next COMMA
             if (nextToken[0] == 11 || nextToken[0] == 10)
@@ -323,7 +616,7 @@ public class ILOCParser {
         }
 
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         iRepElement[5] = nextToken[1]; // store the next reg
         if (nextToken[0] != 6) {// check next REG
             if (nextToken[0] == 11 || nextToken[0] == 10)
@@ -331,7 +624,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         // don't store INTO
         if (nextToken[0] != 8){ // check next INTO
             if (nextToken[0] == 11 || nextToken[0] == 10)
@@ -339,7 +632,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         iRepElement[9] = nextToken[1]; // store the final reg
         this.iRep.add(iRepElement);
         if (nextToken[0] != 6) { // check next REG
@@ -348,7 +641,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         return nextToken[0] == 11 || nextToken[0] == 9 || nextToken[0] == 10; // check ends with nextline
     }
 
@@ -359,7 +652,7 @@ public class ILOCParser {
      * @throws IOException if the scanner's input stream throws an exception
      */
     private boolean OutputCheck(int opCode) throws IOException {
-        Integer[] nextToken = this.scanner.NextToken();
+        Integer[] nextToken = this.NextToken();
         Integer[] iRepElement = new Integer[13];
         iRepElement[0] = opCode; // store the opCode as the first element
 
@@ -371,7 +664,7 @@ public class ILOCParser {
             return false;
         }
 
-        nextToken = this.scanner.NextToken();
+        nextToken = this.NextToken();
         return nextToken[0] == 11 || nextToken[0] == 9 || nextToken[0] == 10; // check ends with nextline
     }
 
@@ -386,7 +679,7 @@ public class ILOCParser {
         iRepElement[0] = opCode; // store the opCode as the first element
         this.iRep.add(iRepElement);
 
-        Integer[] nextToken = this.scanner.NextToken();
+        Integer[] nextToken = this.NextToken();
         return nextToken[0] == 11 || nextToken[0] == 9 || nextToken[0] == 10; // check ends with nextline
     }
 
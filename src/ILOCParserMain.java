@@ -1,3 +1,9 @@
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
 /**
  * This is the main function of the ILOC Parser for lab 1
  */
@@ -13,6 +19,32 @@ public class ILOCParserMain {
         String filePath;
         ILOCParser parser;
         int filePathInd = 1;
+
+        // modifier flags can be combined with any command, so take them out first
+        boolean pipelined = inArgs("-c", args);
+        args = removeArg("-c", args);
+        boolean directScanner = inArgs("-d", args);
+        args = removeArg("-d", args);
+        boolean tableDriven = inArgs("-t", args);
+        args = removeArg("-t", args);
+        boolean valueNumbering = inArgs("-v", args);
+        args = removeArg("-v", args);
+        if (valueNumbering && inArgs("-m", args)) {
+            System.err.println("Value numbering (-v) can't rewrite a memory mapped IR (-m)");
+            return;
+        }
+        ILOCMappedRep mappedRep = null;
+        if (inArgs("-m", args)) {
+            args = removeArg("-m", args);
+            try {
+                mappedRep = new ILOCMappedRep(Files.createTempFile("iloc-ir", ".bin"));
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        }
+
         if (inArgs("-h", args)) {
             showCommandLineInfo();
             if (args.length > 1) {
@@ -30,7 +62,8 @@ public class ILOCParserMain {
                 System.err.println("Please specify the file name");
             else {
                 filePath = args[filePathInd];
-                parser = new ILOCParser(filePath, false, true);
+                parser = createParser(filePath, false, true, directScanner, pipelined, tableDriven,
+                        valueNumbering, mappedRep);
                 parser.Parse();
             }
         }
@@ -44,7 +77,8 @@ public class ILOCParserMain {
             }
             else {
                 filePath = args[filePathInd];
-                parser = new ILOCParser(filePath, false, false);
+                parser = createParser(filePath, false, false, directScanner, pipelined, tableDriven,
+                        valueNumbering, mappedRep);
                 parser.Parse();
             }
         }
@@ -54,11 +88,20 @@ public class ILOCParserMain {
             }
             else {
                 filePath = args[1];
-                parser = new ILOCParser(filePath, true, false);
+                parser = createParser(filePath, true, false, directScanner, pipelined, tableDriven,
+                        valueNumbering, mappedRep);
                 parser.Parse();
             }
         }
 
+        if (mappedRep != null) {
+            try {
+                mappedRep.close();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -74,6 +117,60 @@ public class ILOCParserMain {
         return false;
     }
 
+    /**
+     * Creates a parser for the file, or for standard input if the file name is "-",
+     * set up with the modifier flags
+     * @param filePath the file name given on the command line
+     * @param printTokens whether to print the tokens
+     * @param printIR whether to print the IR
+     * @param directScanner whether to use the direct coded scanner instead of the table driven one
+     * @param pipelined whether to scan on a separate thread (-c)
+     * @param tableDriven whether to check statements against the operand templates (-t)
+     * @param valueNumbering whether to run value numbering after parsing (-v)
+     * @param mappedRep the memory mapped IR to build (-m), null to keep the IR on the heap
+     * @return the parser
+     */
+    private static ILOCParser createParser(String filePath, boolean printTokens, boolean printIR,
+                                           boolean directScanner, boolean pipelined, boolean tableDriven,
+                                           boolean valueNumbering, ILOCMappedRep mappedRep) {
+        ILOCScanner scanner;
+        if (filePath.equals("-")) {
+            FileChannel standardInput = new FileInputStream(FileDescriptor.in).getChannel(); // read straight into the scanner's window
+            scanner = directScanner ? new ILOCDirectScanner(standardInput, printTokens)
+                    : new ILOCScanner(standardInput, printTokens);
+        }
+        else
+            scanner = directScanner ? new ILOCDirectScanner(filePath, printTokens)
+                    : new ILOCScanner(filePath, printTokens);
+        ILOCParser parser = new ILOCParser(scanner, printIR);
+        parser.SetPipelined(pipelined);
+        parser.SetTableDriven(tableDriven);
+        parser.SetValueNumbering(valueNumbering);
+        if (mappedRep != null)
+            parser.SetRep(mappedRep);
+        return parser;
+    }
+
+    /**
+     * @param string the string to remove
+     * @param args the String array to remove the string from
+     * @return a copy of args without any occurrence of string
+     */
+    private static String[] removeArg(String string, String[] args) {
+        int count = 0;
+        for (String arg: args) {
+            if (!arg.equals(string))
+                count++;
+        }
+        String[] remaining = new String[count];
+        int i = 0;
+        for (String arg: args) {
+            if (!arg.equals(string))
+                remaining[i++] = arg;
+        }
+        return remaining;
+    }
+
     private static void showCommandLineInfo() {
         System.out.print(" How to use the ILOC Parser:\n " +
                 "======================================================================\n" +
@@ -98,7 +195,19 @@ public class ILOCParserMain {
                 "-----------\n" +
                 "When a -r flag is detected, 412fe reads the file specified, scanst it,\n" +
                 "parses it, builds the intermediate representation, and prints out the\n" +
-                "info in the intermediate representation\n");
+                "info in the intermediate representation\n" +
+                "======================================================================\n" +
+                "Use - as the file name to read from standard input\n" +
+                "Gzip compressed input (such as a .iloc.gz file) is detected and inflated on a helper thread\n" +
+                "======================================================================\n" +
+                "Modifiers (can be added to -s, -p or -r)\n" +
+                "-----------\n" +
+                "-c  scan on a separate thread from the parser (pipelined)\n" +
+                "-d  use the direct coded scanner instead of the table driven one\n" +
+                "-t  check statements against the operand template table\n" +
+                "-v  remove redundant operations with local value numbering after parsing\n" +
+                "-m  keep the intermediate representation in a memory mapped temporary\n" +
+                "    file instead of on the heap\n");
     }
 
 
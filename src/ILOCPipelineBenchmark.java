@@ -0,0 +1,136 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that the pipelined parser (-c) builds the same IR as the sequential one and always
+ * finishes, then times both.
+ */
+public class ILOCPipelineBenchmark {
+
+    /**
+     * How long a parse may take before it counts as hung, in milliseconds
+     */
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Inputs that end without a newline, or in the middle of a statement, where a statement check
+     * reads past EOF and asks for another token
+     */
+    private static final String[] EDGE_CASES = {
+            "loadI 1 => r1\nnop",
+            "loadI 1 => r1\nload r1 =>",
+            "loadI 1 => r1\nadd r1,",
+            "store r1 => r2",
+            "output",
+            "",
+            "// only a comment",
+    };
+
+    /**
+     * Checks the pipelined parser on the edge cases and the files, then times the files
+     * @param args the ILOC files
+     * @throws IOException if a file can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        boolean equivalent = true;
+        for (String input : EDGE_CASES) {
+            if (!checkEquivalent(input.getBytes(StandardCharsets.ISO_8859_1))) {
+                System.err.println("The pipelined parser differs on: " + input.replace("\n", "\\n"));
+                equivalent = false;
+            }
+        }
+        List<byte[]> inputs = new ArrayList<>();
+        for (String filePath : args) {
+            byte[] bytes = Files.readAllBytes(Paths.get(filePath));
+            inputs.add(bytes);
+            if (!checkEquivalent(bytes)) {
+                System.err.println(filePath + ": the pipelined parser differs");
+                equivalent = false;
+            }
+        }
+        if (!equivalent) {
+            System.err.println("The pipelined parser is not equivalent, not timing it");
+            return;
+        }
+        System.out.println("The pipelined parser agrees on all input");
+
+        for (int i = 0; i < inputs.size(); i++) {
+            byte[] bytes = inputs.get(i);
+            long sequentialNanos = ILOCBenchmark.Best(3, 5, () -> time(bytes, false));
+            long pipelinedNanos = ILOCBenchmark.Best(3, 5, () -> time(bytes, true));
+            System.out.printf("%s: sequential %.2f ms, pipelined %.2f ms (%.2fx)%n", args[i],
+                    sequentialNanos / 1e6, pipelinedNanos / 1e6, (double) sequentialNanos / pipelinedNanos);
+        }
+    }
+
+    /**
+     * @param bytes the input to parse
+     * @return whether the pipelined parser finishes with the same result and IR as the sequential
+     *         one, with and without the operand templates
+     */
+    private static boolean checkEquivalent(byte[] bytes) {
+        for (boolean tableDriven : new boolean[]{false, true}) {
+            List<Integer[]> sequential = new ArrayList<>();
+            List<Integer[]> pipelined = new ArrayList<>();
+            Boolean sequentialSuccess = parse(bytes, false, tableDriven, sequential);
+            Boolean pipelinedSuccess = parse(bytes, true, tableDriven, pipelined);
+            if (sequentialSuccess == null || pipelinedSuccess == null || !sequentialSuccess.equals(pipelinedSuccess)
+                    || !Arrays.deepEquals(sequential.toArray(), pipelined.toArray()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses an input on its own thread without printing, giving up if it takes longer than
+     * TIMEOUT_MILLIS
+     * @param bytes the input to parse
+     * @param pipelined whether to scan on a separate thread
+     * @param tableDriven whether to check statements against the operand templates
+     * @param iRep the list to build the IR in
+     * @return whether the parse succeeded, null if it hung
+     */
+    private static Boolean parse(byte[] bytes, boolean pipelined, boolean tableDriven, List<Integer[]> iRep) {
+        ILOCParser parser = new ILOCParser(new ILOCScanner(new ByteArrayInputStream(bytes), false), false);
+        parser.SetRep(iRep);
+        parser.SetPipelined(pipelined);
+        parser.SetTableDriven(tableDriven);
+
+        return ILOCBenchmark.Quietly(() -> {
+            Thread parserThread = new Thread(parser::Parse, "ILOC parser");
+            parserThread.setDaemon(true);
+            parserThread.start();
+            try {
+                parserThread.join(TIMEOUT_MILLIS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (parserThread.isAlive())
+                return null;
+            return parser.Succeeded();
+        });
+    }
+
+    /**
+     * @param bytes the input to parse
+     * @param pipelined whether to scan on a separate thread
+     * @return the time taken to parse the whole input, in nanoseconds. The parser's messages
+     *         are discarded rather than printed
+     */
+    private static long time(byte[] bytes, boolean pipelined) {
+        ILOCParser parser = new ILOCParser(new ILOCScanner(new ByteArrayInputStream(bytes), false), false);
+        parser.SetPipelined(pipelined);
+        return ILOCBenchmark.Quietly(() -> {
+            long start = System.nanoTime();
+            parser.Parse();
+            return System.nanoTime() - start;
+        });
+    }
+}
@@ -1,6 +1,11 @@
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Stack;
+import java.util.zip.GZIPInputStream;
 
 /**
  * A class meant to scan the next word in an ILOC file.
@@ -8,9 +13,9 @@ import java.util.Stack;
 public class ILOCScanner {
 
     /**
-     * The buffered input stream
+     * The input, read through a bounded lookahead window
      */
-    BufferedInputStream bufInStream;
+    ILOCLookaheadReader input;
 
     /**
      * Classifier table
@@ -39,34 +44,104 @@ public class ILOCScanner {
      */
     HashMap<String, Integer> langMap;
 
+    /**
+     * The column number for the state, character to next state transition
+     * of the last classified character in the current token
+     */
+    int charTransition;
+
     /**
      * To keep track of the -s flag to print the token, lexeme tuples
      */
     boolean printTokens;
 
+    /**
+     * An exception NextTokens caught after scanning part of a batch, thrown on the next call
+     * once the tokens before it have been used
+     */
+    private Exception heldFailure;
+
     /**
      * The constructor for the scanner
      * @param filePath the absolute file to scan
      */
     public ILOCScanner(String filePath, boolean printTokens) {
-        this.classifierTable = this.createClassifierTable(); // establish the classifier Table
-        this.transitionTable = this.createTransitionTable(); // establish the transition table
+        this(OpenFile(filePath), printTokens);
+    }
+
+    /**
+     * A constructor for scanning a stream. A gzip compressed stream is inflated
+     * @param inStream the stream to scan
+     */
+    public ILOCScanner(InputStream inStream, boolean printTokens) {
+        this(OpenStream(inStream), printTokens);
+    }
 
-        this.tokenTypeInts = this.createTokenTypeTable();
+    /**
+     * A constructor for scanning a channel, such as the channel of standard input.
+     * A gzip compressed channel is inflated on a helper thread
+     * @param channel the channel to scan
+     */
+    public ILOCScanner(ReadableByteChannel channel, boolean printTokens) {
+        this.classifierTable = createClassifierTable(); // establish the classifier Table
+        this.transitionTable = createTransitionTable(); // establish the transition table
+
+        this.tokenTypeInts = createTokenTypeTable();
         this.tokenTypeStrings = new String[] {"MEMOP", "LOADI", "ARITHOP", "OUTPUT", "NOP", "CONSTANT",
                 "REG", "COMMA", "INTO", "EOF", "COMMENT", "NEWLINE", "ERROR"}; // 13 token types
 
         this.langMap = createLangMap();
         this.printTokens = printTokens;
 
+        if (channel != null)
+            this.input = OpenReader(channel);
+    }
 
+    /**
+     * Opens a lookahead reader over a channel, inflating it if it starts with the gzip magic number
+     * @param channel the channel to read
+     * @return the reader, or null if the channel can't be read
+     */
+    private static ILOCLookaheadReader OpenReader(ReadableByteChannel channel) {
         try {
-            bufInStream = new BufferedInputStream(new FileInputStream(filePath), 1000); // 1 kilobyte buffer
+            ILOCLookaheadReader reader = new ILOCLookaheadReader(channel); // 64 kilobyte window
+            reader.mark(); // peek through the window, so pipes can be checked too
+            boolean gzip = reader.read() == (GZIPInputStream.GZIP_MAGIC & 0xFF)
+                    && reader.read() == GZIPInputStream.GZIP_MAGIC >>> 8;
+            reader.reset();
+            if (gzip)
+                return new ILOCLookaheadReader(new ILOCInflatingChannel(reader.AsStream()));
+            return reader;
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Opens a file to scan
+     * @param filePath the absolute file to open
+     * @return the channel of the file, or null if it can't be opened
+     */
+    private static ReadableByteChannel OpenFile(String filePath) {
+        try {
+            return FileChannel.open(Paths.get(filePath));
         }
         catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
+    }
 
+    /**
+     * Opens a stream to scan. Streams are read through a copying adapter, so use a channel
+     * where there is one
+     * @param inStream the stream to open
+     * @return the channel of the stream
+     */
+    private static ReadableByteChannel OpenStream(InputStream inStream) {
+        return Channels.newChannel(inStream);
     }
 
     /**
@@ -75,13 +150,23 @@ public class ILOCScanner {
      * @throws IOException when there is an error reading from the inputstream
      */
     public Integer[] NextToken() throws IOException {
-        char nextChar; // the next character to be read
+        long packedToken = this.NextPackedToken();
+        return new Integer[]{TokenType(packedToken), TokenValue(packedToken)};
+    }
+
+    /**
+     * Gets the next word character by character, packed into a single long (see PackToken)
+     * @return The next word as a packed long
+     * @throws IOException when there is an error reading from the inputstream
+     */
+    public long NextPackedToken() throws IOException {
+        char nextChar = ' '; // the next character to be read
         int state = 0; // the current state
-        int charTransition = 20; // the column number for the state, character to next state transition. space default
+        this.charTransition = 20; // space default
         StringBuilder lexeme = new StringBuilder();
         Stack<Integer> stateStack = new Stack<>();
         stateStack.push(-2); // -2 represents 'bad'
-        this.bufInStream.mark(Integer.MAX_VALUE); // mark at the beginning ('bad') mark
+        this.input.mark(); // mark at the beginning ('bad') mark
 
         while(state != -1) {
             nextChar = (char) this.NextChar();
@@ -92,18 +177,13 @@ public class ILOCScanner {
             }
             stateStack.push(state); // track states in the stack
 
-            try
-            {
-                charTransition = this.classifierTable.get(nextChar);
-            }
-            catch (Exception ignored) {}
-
-            state = this.transitionTable[state][charTransition]; // transition into the next state
-            if (checkAcceptingState(state))
-                this.bufInStream.mark(Integer.MAX_VALUE);
+            state = this.Transition(state, nextChar); // transition into the next state
+            if (checkAcceptingState(state) || state == 0) // re-mark while skipping whitespace, so long runs of it can't push the mark out of the window
+                this.input.mark();
         }
 
-        this.RollBack();
+        if (!this.RollBack() && nextChar == '\n')
+            this.input.Unread(); // the mark was lost, but leave the newline for the next token
         while(state != -2 && !checkAcceptingState(state) ) {
             state = stateStack.pop();
             if (lexeme.length() != 0)
@@ -111,33 +191,127 @@ public class ILOCScanner {
         }
 
         // if an accepting state, return the token type and the lexeme
-        if (checkAcceptingState(state)) {
-            if (this.printTokens)
-                System.out.println("<" + tokenTypeStrings[tokenTypeInts[state]] + ", " + lexeme.toString().trim() + ">");
-            return new Integer[]
-                    {tokenTypeInts[state],
-                            lexemeToInt(tokenTypeInts[state], lexeme.toString().trim())};
-        }
+        if (checkAcceptingState(state))
+            return this.AcceptToken(state, lexeme.toString().trim());
+        return this.ErrorToken(lexeme.toString().trim());
+    }
+
+    /**
+     * Makes the token for a lexeme the DFA accepted, printing it for the -s flag
+     * @param state the accepting state
+     * @param lexeme the lexeme, trimmed
+     * @return the token packed by PackToken
+     */
+    long AcceptToken(int state, String lexeme) {
+        if (this.printTokens)
+            System.out.println("<" + tokenTypeStrings[tokenTypeInts[state]] + ", " + lexeme + ">");
+        return PackToken(tokenTypeInts[state], lexemeToInt(tokenTypeInts[state], lexeme));
+    }
 
+    /**
+     * Makes the ERROR token when the DFA accepted nothing, and skips the rest of the line.
+     * The input must have been rolled back first
+     * @param lexeme what is left of the lexeme after rolling back, trimmed
+     * @return the ERROR token packed by PackToken
+     * @throws IOException when there is an error reading from the inputstream
+     */
+    long ErrorToken(String lexeme) throws IOException {
+        char nextChar;
         if (this.printTokens)
-            System.out.println("<" + tokenTypeStrings[12] + ", " + lexeme.toString().trim() + ">");
+            System.out.println("<" + tokenTypeStrings[12] + ", " + lexeme + ">");
 
         /*
          * In the error case, read to the end of the ine
          */
 
         do {
-            this.bufInStream.mark(Integer.MAX_VALUE); //
+            this.input.mark(); //
             nextChar = (char) this.NextChar();
-            lexeme.append(nextChar);
         } while (nextChar != '\n' && nextChar != '\uFFFF');
 
         if (nextChar == '\n') {
-            this.bufInStream.reset(); // in the
+            this.input.reset(); // in the
         }
 
 
-        return new Integer[]{12, -1}; // The ERROR token is returned
+        return PackToken(12, -1); // The ERROR token is returned
+    }
+
+    /**
+     * Finds the state the DFA moves to on a character.
+     * A character missing from the classifier table keeps the column of the last character
+     * that was in it (charTransition).
+     * @param state the current state
+     * @param nextChar the character read
+     * @return the next state, -1 if there is no transition
+     */
+    private int Transition(int state, char nextChar) {
+        Integer charClass = this.classifierTable.get(nextChar);
+        if (charClass != null)
+            this.charTransition = charClass;
+        return this.transitionTable[state][this.charTransition];
+    }
+
+    /**
+     * Scans a batch of tokens, stopping early after EOF. If scanning a token throws, the batch
+     * stops before it and the exception is thrown by the next call, as NextPackedToken would
+     * have thrown it once the tokens before it were read.
+     * @param out the array to put the packed tokens in (see PackToken)
+     * @param max the maximum number of tokens to scan
+     * @return the number of tokens put in out, at least one
+     * @throws IOException when there is an error reading from the inputstream
+     */
+    public int NextTokens(long[] out, int max) throws IOException {
+        if (this.heldFailure != null) {
+            Exception failure = this.heldFailure;
+            this.heldFailure = null;
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            throw (IOException) failure;
+        }
+
+        int count = 0;
+        try {
+            while (count < max) {
+                long packedToken = this.NextPackedToken();
+                out[count++] = packedToken;
+                if (TokenType(packedToken) == 9) // EOF
+                    break;
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            if (count == 0)
+                throw e;
+            this.heldFailure = e; // hand over the tokens scanned so far first
+        }
+        return count;
+    }
+
+    /**
+     * Packs a token into a long. The token type goes in the high 32 bits and the lexeme
+     * value in the low 32 bits, so tokens can be passed around without boxing.
+     * @param tokenType the token type (0 - 12)
+     * @param value the integer value of the lexeme
+     * @return the packed token
+     */
+    public static long PackToken(int tokenType, int value) {
+        return ((long) tokenType << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param packedToken a token packed by PackToken
+     * @return the token type of the packed token
+     */
+    public static int TokenType(long packedToken) {
+        return (int) (packedToken >>> 32);
+    }
+
+    /**
+     * @param packedToken a token packed by PackToken
+     * @return the lexeme value of the packed token
+     */
+    public static int TokenValue(long packedToken) {
+        return (int) packedToken;
     }
 
     /**
@@ -166,7 +340,7 @@ public class ILOCScanner {
      * @param lexeme the lexeme
      * @return the integer representation
      */
-    private int lexemeToInt(int tokenType, String lexeme) {
+    int lexemeToInt(int tokenType, String lexeme) {
         if (tokenType == 5) // if constant store as in
             return Integer.parseInt(lexeme);
         else if (tokenType == 6) // if register store as int as well
@@ -181,15 +355,15 @@ public class ILOCScanner {
      * @throws IOException in case the input stream fails
      */
     private int NextChar() throws IOException {
-        return this.bufInStream.read();
+        return this.input.read();
     }
 
     /**
-     * Goes back to the marked position in the BufferedInputStream
-     * @throws IOException if there is an IO error while trying to go back in the stream
+     * Goes back to the marked position in the input
+     * @return whether the mark was still in the lookahead window
      */
-    private void RollBack() throws IOException {
-        this.bufInStream.reset();
+    private boolean RollBack() {
+        return this.input.reset();
     }
 
     /**
@@ -206,7 +380,7 @@ public class ILOCScanner {
      * the operations types they represent.
      * @return the token type table from state to token representation
      */
-    private Integer[] createTokenTypeTable () {
+    static Integer[] createTokenTypeTable () {
 
         // 0 "MEMOP",
         // 1 "LOADI",
@@ -254,7 +428,7 @@ public class ILOCScanner {
      * transition table.
      * @return the created Classifier Table
      */
-    private HashMap<Character, Integer> createClassifierTable () {
+    static HashMap<Character, Integer> createClassifierTable () {
         HashMap<Character, Integer> cTable = new HashMap<>();
 
         cTable.put('s', 0);
@@ -299,12 +473,27 @@ public class ILOCScanner {
         return cTable;
     }
 
+    /**
+     * Creates the classifier table indexed by byte, for scanners that read bytes directly
+     * @return the column of each byte b at index b + 1, so EOF (-1) is at index 0.
+     *         -1 for a byte that isn't in the classifier table
+     */
+    static int[] createByteClassifierTable() {
+        HashMap<Character, Integer> cTable = createClassifierTable();
+        int[] bTable = new int[257];
+        for (int b = -1; b < 256; b++) {
+            Integer charClass = cTable.get((char) b); // EOF is '\uFFFF' as a char
+            bTable[b + 1] = charClass != null ? charClass : -1;
+        }
+        return bTable;
+    }
+
     /**
      * Creates the transition table for an ILOC Scanner
      * @return the two dimensional array where the row, column transition represents what
      *         next state(value) the current state(row num) transitions(column num) to
      */
-    private Integer[][] createTransitionTable() {
+    static Integer[][] createTransitionTable() {
         return new Integer[][]
                 {
                         //0   1   2   3   4   5   6   7   8   9   10  11  12  13  14  15  16  17  18  19  20  21  22  23  24 25
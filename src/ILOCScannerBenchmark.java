@@ -0,0 +1,190 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the direct coded scanner finds the same tokens as the table driven one,
+ * then times both so the faster can be kept.
+ */
+public class ILOCScannerBenchmark {
+
+    /**
+     * Checks the scanners against each other on random input, long lookahead and the files,
+     * then times them on the files
+     * @param args the ILOC files
+     * @throws IOException if a file can't be read
+     */
+    public static void main(String[] args) throws IOException {
+        boolean equivalent = checkRandomInput(2000, 1) & checkLongLookahead();
+        List<byte[]> inputs = new ArrayList<>();
+        for (String filePath : args) {
+            byte[] bytes = Files.readAllBytes(Paths.get(filePath));
+            inputs.add(bytes);
+            if (!checkEquivalent(bytes)) {
+                System.err.println(filePath + ": the scanners disagree");
+                equivalent = false;
+            }
+        }
+        if (!equivalent) {
+            System.err.println("The direct coded scanner is not equivalent, not timing it");
+            return;
+        }
+        System.out.println("The scanners agree on all input");
+
+        for (int i = 0; i < inputs.size(); i++) {
+            byte[] bytes = inputs.get(i);
+            long tableNanos = ILOCBenchmark.Best(5, 10, () -> time(bytes, false));
+            long directNanos = ILOCBenchmark.Best(5, 10, () -> time(bytes, true));
+            System.out.printf("%s: table %.2f ms, direct %.2f ms (%.2fx)%n", args[i],
+                    tableNanos / 1e6, directNanos / 1e6, (double) tableNanos / directNanos);
+        }
+    }
+
+    /**
+     * Checks the scanners against each other on random strings of ILOC characters,
+     * plus a few characters the classifier table doesn't have
+     * @param count the number of strings to check
+     * @param seed the random seed
+     * @return whether the scanners agreed on every string
+     */
+    private static boolean checkRandomInput(int count, long seed) {
+        HashMap<Character, Integer> classifierTable = ILOCScanner.createClassifierTable();
+        StringBuilder alphabet = new StringBuilder(";xZ\r");
+        for (Character c : classifierTable.keySet()) {
+            if (c != '\uFFFF') // EOF is the end of the input, not a character in it
+                alphabet.append(c);
+        }
+        String[] words = {"load ", "loadI ", "store ", "add ", "sub ", "mult ", "lshift ", "rshift ",
+                "output ", "nop", "r12", "345", " => ", ", ", "// comment\n", "\n"};
+
+        Random random = new Random(seed);
+        boolean equivalent = true;
+        for (int i = 0; i < count; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(60);
+            for (int j = 0; j < length; j++) {
+                if (random.nextBoolean())
+                    input.append(words[random.nextInt(words.length)]);
+                else
+                    input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (!checkEquivalent(input.toString().getBytes(StandardCharsets.ISO_8859_1))) {
+                System.err.println("The scanners disagree on: " + input);
+                equivalent = false;
+            }
+        }
+        return equivalent;
+    }
+
+    /**
+     * Checks input where a token starts more than a lookahead window before it fails, so the
+     * scanners have to roll back further than ILOCLookaheadReader keeps by default
+     * @return whether both scanners found the expected token types
+     */
+    private static boolean checkLongLookahead() {
+        String spaces = " ".repeat(ILOCLookaheadReader.DEFAULT_WINDOW + 4464);
+        String comment = "//" + "x".repeat(ILOCLookaheadReader.DEFAULT_WINDOW + 4464);
+        String[] inputs = {
+                spaces + "lo\nloadI 1 => r1\nnop\n",
+                spaces + "loadI 1 => r1\nnop\n",
+                comment + "\nloadI 1 => r1\n",
+                "nop" + comment,
+        };
+        int[][] expectedTypes = {
+                {12, 11, 1, 5, 8, 6, 11, 4, 11, 9},
+                {1, 5, 8, 6, 11, 4, 11, 9},
+                {10, 1, 5, 8, 6, 11, 9},
+                {4, 12, 9},
+        };
+
+        boolean expected = true;
+        for (int i = 0; i < inputs.length; i++) {
+            byte[] bytes = inputs[i].getBytes(StandardCharsets.ISO_8859_1);
+            for (boolean direct : new boolean[]{false, true}) {
+                List<Long> tokens = scanAll(direct ? new ILOCDirectScanner(new ByteArrayInputStream(bytes), false)
+                        : new ILOCScanner(new ByteArrayInputStream(bytes), false));
+                boolean same = tokens.size() == expectedTypes[i].length;
+                for (int j = 0; same && j < tokens.size(); j++) {
+                    same = ILOCScanner.TokenType(tokens.get(j)) == expectedTypes[i][j];
+                }
+                if (!same) {
+                    System.err.println("Long lookahead input " + i + ": the " + (direct ? "direct coded" : "table driven")
+                            + " scanner found the wrong tokens");
+                    expected = false;
+                }
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * @param bytes the input to scan
+     * @return whether both scanners find the same tokens, or fail the same way, and scanning
+     *         in batches finds the same tokens as scanning one at a time
+     */
+    private static boolean checkEquivalent(byte[] bytes) {
+        List<Long> tokens = scanAll(new ILOCScanner(new ByteArrayInputStream(bytes), false));
+        return tokens.equals(scanAll(new ILOCDirectScanner(new ByteArrayInputStream(bytes), false)))
+                && tokens.equals(scanBatches(new ILOCScanner(new ByteArrayInputStream(bytes), false)));
+    }
+
+    /**
+     * @param scanner the scanner to run
+     * @return every token up to EOF, then the exception if the scanner threw one
+     */
+    private static List<Long> scanAll(ILOCScanner scanner) {
+        List<Long> tokens = new ArrayList<>();
+        try {
+            long packedToken;
+            do {
+                packedToken = scanner.NextPackedToken();
+                tokens.add(packedToken);
+            } while (ILOCScanner.TokenType(packedToken) != 9);
+        }
+        catch (Exception e) {
+            tokens.add((long) e.getClass().getName().hashCode());
+        }
+        return tokens;
+    }
+
+    /**
+     * @param scanner the scanner to run
+     * @return every token up to EOF, scanned a few at a time with NextTokens, then the
+     *         exception if the scanner threw one
+     */
+    private static List<Long> scanBatches(ILOCScanner scanner) {
+        List<Long> tokens = new ArrayList<>();
+        long[] batch = new long[3];
+        try {
+            while (tokens.isEmpty() || ILOCScanner.TokenType(tokens.get(tokens.size() - 1)) != 9) {
+                int count = scanner.NextTokens(batch, batch.length);
+                for (int i = 0; i < count; i++) {
+                    tokens.add(batch[i]);
+                }
+            }
+        }
+        catch (Exception e) {
+            tokens.add((long) e.getClass().getName().hashCode());
+        }
+        return tokens;
+    }
+
+    /**
+     * @param bytes the input to scan
+     * @param direct whether to use the direct coded scanner
+     * @return the time taken to scan the whole input, in nanoseconds
+     */
+    private static long time(byte[] bytes, boolean direct) {
+        ILOCScanner scanner = direct ? new ILOCDirectScanner(new ByteArrayInputStream(bytes), false)
+                : new ILOCScanner(new ByteArrayInputStream(bytes), false);
+        long start = System.nanoTime();
+        scanAll(scanner);
+        return System.nanoTime() - start;
+    }
+}
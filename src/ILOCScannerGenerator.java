@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.TreeSet;
+
+/**
+ * Generates ILOCDirectScanner, a direct coded version of the ILOCScanner DFA.
+ *
+ * The whole token loop is generated. Each byte is classified with one array lookup, and every
+ * state of the transition table becomes a switch arm that knows at generation time where each
+ * column leads and whether that state accepts, instead of reading the transition table.
+ * The loop is kept small enough for the JIT to compile (HotSpot skips methods over 8000 bytes).
+ * Run it again whenever createClassifierTable, createTransitionTable or createTokenTypeTable change.
+ */
+public class ILOCScannerGenerator {
+
+    /**
+     * Writes the generated scanner
+     * @param args the file to write to, src/ILOCDirectScanner.java by default
+     * @throws IOException if the file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        String outPath = args.length > 0 ? args[0] : "src/ILOCDirectScanner.java";
+        Files.writeString(Paths.get(outPath), generate());
+    }
+
+    /**
+     * @return the source of ILOCDirectScanner
+     */
+    public static String generate() {
+        Integer[][] transitionTable = ILOCScanner.createTransitionTable();
+        Integer[] tokenTypeInts = ILOCScanner.createTokenTypeTable();
+        TreeSet<Integer> columns = new TreeSet<>(ILOCScanner.createClassifierTable().values());
+
+        StringBuilder src = new StringBuilder();
+        src.append("import java.io.IOException;\n")
+                .append("import java.io.InputStream;\n")
+                .append("import java.nio.channels.ReadableByteChannel;\n\n")
+                .append("/**\n")
+                .append(" * A direct coded ILOC scanner. The token loop has a switch arm per DFA state with the\n")
+                .append(" * transitions written out, instead of looking them up in the transition table.\n")
+                .append(" *\n")
+                .append(" * Generated by ILOCScannerGenerator from the tables in ILOCScanner. Do not edit.\n")
+                .append(" */\n")
+                .append("public class ILOCDirectScanner extends ILOCScanner {\n\n");
+
+        src.append("    /**\n     * The column of each byte, see createByteClassifierTable\n     */\n")
+                .append("    private static final int[] BYTE_CLASSES = createByteClassifierTable();\n\n");
+        src.append("    /**\n     * The lexeme of the token being scanned, reused for every token\n     */\n")
+                .append("    private final StringBuilder lexeme = new StringBuilder();\n\n");
+
+        src.append("    /**\n     * The constructor for the scanner\n     * @param filePath the absolute file to scan\n     */\n")
+                .append("    public ILOCDirectScanner(String filePath, boolean printTokens) {\n")
+                .append("        super(filePath, printTokens);\n    }\n\n");
+        src.append("    /**\n     * A constructor for scanning a stream\n     * @param inStream the stream to scan\n     */\n")
+                .append("    public ILOCDirectScanner(InputStream inStream, boolean printTokens) {\n")
+                .append("        super(inStream, printTokens);\n    }\n\n");
+        src.append("    /**\n     * A constructor for scanning a channel, such as the channel of standard input\n     * @param channel the channel to scan\n     */\n")
+                .append("    public ILOCDirectScanner(ReadableByteChannel channel, boolean printTokens) {\n")
+                .append("        super(channel, printTokens);\n    }\n\n");
+
+        src.append("    /**\n")
+                .append("     * Gets the next word, finding the same tokens as ILOCScanner.NextPackedToken\n")
+                .append("     * @return The next word as a packed long\n")
+                .append("     * @throws IOException when there is an error reading from the inputstream\n")
+                .append("     */\n")
+                .append("    @Override\n")
+                .append("    public long NextPackedToken() throws IOException {\n")
+                .append("        ILOCLookaheadReader input = this.input;\n")
+                .append("        StringBuilder lexeme = this.lexeme;\n")
+                .append("        lexeme.setLength(0);\n")
+                .append("        int column = 20; // the column of the last byte in the classifier table (see charTransition)\n")
+                .append("        int state = 0;\n")
+                .append("        int accepted = -2; // the last accepting state, -2 ('bad') if there is none yet\n")
+                .append("        int acceptedLength = 0; // the length of the lexeme when it was accepted\n")
+                .append("        int c;\n")
+                .append("        input.mark();\n\n")
+                .append("        do {\n")
+                .append("            c = input.read();\n")
+                .append("            lexeme.append((char) c);\n")
+                .append("            int byteClass = BYTE_CLASSES[c + 1];\n")
+                .append("            if (byteClass >= 0) // a byte missing from the classifier table keeps the last column\n")
+                .append("                column = byteClass;\n")
+                .append("            switch (state) {\n");
+        for (int state = 0; state < transitionTable.length; state++) {
+            if (isDead(transitionTable[state]))
+                continue;
+
+            src.append("                case ").append(state).append(":\n")
+                    .append("                    switch (column) {\n");
+            for (int column : columns) {
+                int next = transitionTable[state][column];
+                if (next == -1)
+                    continue;
+                src.append("                        case ").append(column).append(":\n");
+                if (!appendTransition(src, "                            ", state, next, tokenTypeInts, transitionTable))
+                    src.append("                            break;\n");
+            }
+            src.append("                        default:\n")
+                    .append("                            state = -1;\n")
+                    .append("                    }\n")
+                    .append("                    break;\n");
+        }
+        src.append("                default:\n")
+                .append("                    state = -1;\n")
+                .append("            }\n")
+                .append("        } while (state != -1);\n\n")
+                .append("        if (!input.reset() && c == '\\n')\n")
+                .append("            input.Unread(); // the mark was lost, but leave the newline for the next token\n")
+                .append("        if (accepted >= 0)\n")
+                .append("            return this.AcceptToken(accepted, lexeme.substring(0, acceptedLength).trim());\n")
+                .append("        return this.ErrorToken(\"\"); // every character read was rolled back\n")
+                .append("    }\n")
+                .append("}\n");
+        return src.toString();
+    }
+
+    /**
+     * Appends the code that moves the DFA into a state
+     * @param src the source to append to
+     * @param indent the indent of each line
+     * @param state the state moved from
+     * @param next the state moved to
+     * @param tokenTypeInts the token type of each state, 12 if it doesn't accept
+     * @param transitionTable the transition table
+     * @return whether the code returns the token, so nothing can follow it
+     */
+    private static boolean appendTransition(StringBuilder src, String indent, int state, int next,
+                                         Integer[] tokenTypeInts, Integer[][] transitionTable) {
+        boolean accepting = tokenTypeInts[next] != 12;
+        if (accepting && isDead(transitionTable[next])) { // no character can follow, so don't read one
+            src.append(indent).append("return this.AcceptToken(").append(next).append(", lexeme.toString().trim());\n");
+            return true;
+        }
+        if (next != state)
+            src.append(indent).append("state = ").append(next).append(";\n");
+        if (accepting) {
+            src.append(indent).append("accepted = ").append(next).append(";\n")
+                    .append(indent).append("acceptedLength = lexeme.length();\n")
+                    .append(indent).append("input.mark();\n");
+        }
+        else if (next == 0) {
+            src.append(indent).append("input.mark(); // re-mark while skipping whitespace\n");
+        }
+        return false;
+    }
+
+    /**
+     * @param row a row of the transition table
+     * @return whether every transition out of the state fails
+     */
+    private static boolean isDead(Integer[] row) {
+        for (Integer next : row) {
+            if (next != -1)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free single producer, single consumer ring buffer of packed tokens.
+ *
+ * The scanner thread is the only producer and the parser thread is the only consumer,
+ * so each index is only ever written by one thread and no locks are needed. A thread that
+ * has to wait spins, then yields, then parks for a little longer each time, so a long wait
+ * (such as for a slow pipe) doesn't keep a core busy.
+ */
+public class ILOCTokenRing {
+
+    /**
+     * How many times to spin while waiting before yielding instead
+     */
+    private static final int SPIN_LIMIT = 100;
+
+    /**
+     * How many times to spin or yield while waiting before parking instead
+     */
+    private static final int YIELD_LIMIT = 200;
+
+    /**
+     * The first time to park for, in nanoseconds. It doubles on each wait after that
+     */
+    private static final long MIN_PARK_NANOS = 10_000;
+
+    /**
+     * The longest time to park for, in nanoseconds (1 millisecond)
+     */
+    private static final long MAX_PARK_NANOS = 1_000_000;
+
+    /**
+     * The slots of the ring. The length is always a power of two
+     */
+    private final long[] slots;
+
+    /**
+     * slots.length - 1, to wrap an index into a slot
+     */
+    private final int mask;
+
+    /**
+     * The next index the producer will write to. Only written by the producer
+     */
+    private final AtomicLong tail;
+
+    /**
+     * The next index the consumer will read from. Only written by the consumer
+     */
+    private final AtomicLong head;
+
+    /**
+     * The producer's last seen value of head, to avoid reading the shared index every token
+     */
+    private long cachedHead;
+
+    /**
+     * The consumer's last seen value of tail, to avoid reading the shared index every token
+     */
+    private long cachedTail;
+
+    /**
+     * Set by the producer if scanning fails, so the consumer can rethrow it
+     */
+    private volatile Exception failure;
+
+    /**
+     * Set by the consumer once it stops taking tokens, so a producer waiting for room gives up
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a token ring
+     *
+     * @param capacity the minimum number of tokens the ring can hold, rounded up to a power of two
+     */
+    public ILOCTokenRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new long[size];
+        this.mask = size - 1;
+        this.tail = new AtomicLong(0);
+        this.head = new AtomicLong(0);
+        this.cachedHead = 0;
+        this.cachedTail = 0;
+    }
+
+    /**
+     * Adds a packed token to the ring, waiting while the ring is full.
+     * Must only be called from the producer thread.
+     *
+     * @param packedToken the token to add
+     * @return false if the consumer closed the ring while it was full, so the producer should stop
+     */
+    public boolean Put(long packedToken) {
+        long t = this.tail.get();
+        if (t - this.cachedHead == this.slots.length) {
+            this.cachedHead = this.head.get();
+            for (int spins = 0; t - this.cachedHead == this.slots.length; spins++) {
+                if (this.closed)
+                    return false;
+                Backoff(spins);
+                this.cachedHead = this.head.get();
+            }
+        }
+        this.slots[(int) t & this.mask] = packedToken;
+        this.tail.lazySet(t + 1); // publish the slot after it is written
+        return true;
+    }
+
+    /**
+     * Records that the consumer won't take any more tokens, for example because parsing failed
+     * with an exception. Must only be called from the consumer thread.
+     */
+    public void Close() {
+        this.closed = true;
+    }
+
+    /**
+     * Records that the producer failed. The consumer will throw the exception once it
+     * has read every token that was put before the failure.
+     * Must only be called from the producer thread.
+     *
+     * @param e the exception the scanner threw, an IOException or a RuntimeException
+     */
+    public void Fail(Exception e) {
+        this.failure = e;
+    }
+
+    /**
+     * Takes every available token, up to max, out of the ring, waiting if the ring is empty.
+     * Must only be called from the consumer thread.
+     *
+     * @param out the array to copy the tokens into
+     * @param max the maximum number of tokens to take
+     * @return the number of tokens taken, at least one
+     * @throws IOException if the producer failed before putting another token.
+     *         A RuntimeException from the producer is rethrown as is
+     */
+    public int TakeBatch(long[] out, int max) throws IOException {
+        long h = this.head.get();
+        if (this.cachedTail == h) {
+            this.cachedTail = this.tail.get();
+            for (int spins = 0; this.cachedTail == h; spins++) {
+                if (this.failure != null) {
+                    this.cachedTail = this.tail.get(); // the failure may have raced with a last token
+                    if (this.cachedTail == h)
+                        this.ThrowFailure();
+                    break;
+                }
+                Backoff(spins);
+                this.cachedTail = this.tail.get();
+            }
+        }
+
+        int count = (int) Math.min(max, this.cachedTail - h);
+        for (int i = 0; i < count; i++) {
+            out[i] = this.slots[(int) (h + i) & this.mask];
+        }
+        this.head.lazySet(h + count); // free the slots after they are read
+        return count;
+    }
+
+    /**
+     * Waits a little for the other thread. Spins at first, then yields the processor so the
+     * other thread can make progress when there are fewer cores than threads, then parks.
+     * @param spins how many times the caller has already waited
+     */
+    private static void Backoff(int spins) {
+        if (spins < SPIN_LIMIT)
+            Thread.onSpinWait();
+        else if (spins < YIELD_LIMIT)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, MIN_PARK_NANOS << Math.min(spins - YIELD_LIMIT, 7)));
+    }
+
+    /**
+     * Rethrows the exception the producer failed with
+     * @throws IOException if the producer failed with an IOException
+     */
+    private void ThrowFailure() throws IOException {
+        if (this.failure instanceof RuntimeException)
+            throw (RuntimeException) this.failure;
+        throw (IOException) this.failure;
+    }
+}
@@ -0,0 +1,254 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * Local value numbering over a block of ILOC, removing operations that recompute a value
+ * a register already holds.
+ *
+ * Each register value gets a value number. Each computation is looked up in an ILOCIntMap
+ * keyed by (opcode, value number 1, value number 2) packed into a long, with the operands of
+ * add and mult sorted so that both orders match. Loads are keyed by the address and a memory generation
+ * that every store bumps, so a store invalidates every load before it. A store also records the
+ * stored value for later loads from the same address.
+ *
+ * ILOC has no copy operation, so a redundant operation is removed and the later uses of its
+ * target register are renamed to the register that already holds the value. The def-use index
+ * checks that the holding register is not redefined before the last renamed use. If it is, the
+ * operation is kept.
+ */
+public class ILOCValueNumbering {
+
+    /**
+     * The IR being optimized
+     */
+    private final List<Integer[]> iRep;
+
+    /**
+     * The value number of each expression, keyed by ExpressionKey
+     */
+    private ILOCIntMap expressions;
+
+    /**
+     * The register holding each value number, -1 if none is known to
+     */
+    private int[] holders;
+
+    /**
+     * The number of value numbers handed out
+     */
+    private int valueCount;
+
+    /**
+     * Creates a value numbering pass
+     *
+     * @param iRep the IR to optimize, as built by ILOCParser. It must support set and remove
+     *             through its list iterator, so an ILOCMappedRep can't be optimized
+     */
+    public ILOCValueNumbering(List<Integer[]> iRep) {
+        this.iRep = iRep;
+    }
+
+    /**
+     * Runs the pass, rewriting the IR in place
+     *
+     * @return the number of operations removed
+     */
+    public int Run() {
+        List<Integer[]> ops = new ArrayList<>(this.iRep);
+        ILOCDefUseIndex index = new ILOCDefUseIndex(ops);
+        int opCount = ops.size();
+
+        this.expressions = new ILOCIntMap(opCount);
+        this.holders = new int[Math.max(16, opCount * 2)];
+        this.valueCount = 0;
+        ILOCIntMap registerValues = new ILOCIntMap(opCount);
+        ILOCIntMap registerDefs = new ILOCIntMap(opCount); // the last kept operation defining each register
+        ILOCIntMap renames = new ILOCIntMap(16);           // uses to rename after a removal, -1 for none
+        int memoryGeneration = 0;
+
+        boolean[] removed = new boolean[opCount];
+        Integer[][] rewritten = new Integer[opCount][];
+        int removedCount = 0;
+
+        for (int op = 0; op < opCount; op++) {
+            Integer[] iRepElement = ops.get(op);
+            int opCode = iRepElement[0];
+
+            // rename the uses of registers whose definitions were removed
+            Integer[] renamed = null;
+            for (int operand = 0; operand < 3; operand++) {
+                Integer register = iRepElement[operand * 4 + 1];
+                if (register == null || ILOCDefUseIndex.OperandKind(opCode, operand) != ILOCDefUseIndex.USE)
+                    continue;
+                int target = renames.Get(register, -1);
+                if (target >= 0) {
+                    if (renamed == null)
+                        renamed = iRepElement.clone();
+                    renamed[operand * 4 + 1] = target;
+                }
+            }
+            if (renamed != null) {
+                rewritten[op] = renamed;
+                iRepElement = renamed;
+            }
+
+            Integer first = iRepElement[1], second = iRepElement[5], target = iRepElement[9];
+            if (opCode == ILOCInterpreter.OUTPUT || opCode == ILOCInterpreter.NOP || first == null)
+                continue; // output and nop neither change registers nor memory
+
+            if (opCode == ILOCInterpreter.STORE) {
+                if (target == null)
+                    continue;
+                memoryGeneration++;
+                int address = this.ValueOf(registerValues, target);
+                int stored = this.ValueOf(registerValues, first);
+                this.expressions.Put(ExpressionKey(ILOCInterpreter.LOAD, address, memoryGeneration), stored);
+                continue;
+            }
+            if (target == null || (opCode > ILOCInterpreter.LOADI && second == null))
+                continue;
+
+            // find the value number of the computation
+            int keyFirstValue, keySecondValue;
+            if (opCode == ILOCInterpreter.LOADI) {
+                keyFirstValue = first;
+                keySecondValue = 0;
+            }
+            else if (opCode == ILOCInterpreter.LOAD) {
+                keyFirstValue = this.ValueOf(registerValues, first);
+                keySecondValue = memoryGeneration;
+            }
+            else {
+                keyFirstValue = this.ValueOf(registerValues, first);
+                keySecondValue = this.ValueOf(registerValues, second);
+                boolean commutative = opCode == ILOCInterpreter.ADD || opCode == ILOCInterpreter.MULT;
+                if (commutative && keyFirstValue > keySecondValue) {
+                    int swap = keyFirstValue;
+                    keyFirstValue = keySecondValue;
+                    keySecondValue = swap;
+                }
+            }
+            long key = ExpressionKey(opCode, keyFirstValue, keySecondValue);
+            int value = this.expressions.Get(key, -1);
+
+            if (value >= 0 && this.CanRemove(op, value, target, index, registerValues, registerDefs)) {
+                int holder = this.holders[value];
+                removed[op] = true;
+                removedCount++;
+                renames.Put(target, holder == target ? -1 : holder);
+                registerValues.Put(target, value);
+                continue;
+            }
+
+            if (value < 0) {
+                value = this.NewValue(-1);
+                this.expressions.Put(key, value);
+            }
+            renames.Put(target, -1);
+            registerValues.Put(target, value);
+            registerDefs.Put(target, op);
+            this.holders[value] = target;
+        }
+
+        // write the removals and renames back into the IR
+        ListIterator<Integer[]> iterator = this.iRep.listIterator();
+        for (int op = 0; op < opCount; op++) {
+            iterator.next();
+            if (removed[op])
+                iterator.remove();
+            else if (rewritten[op] != null)
+                iterator.set(rewritten[op]);
+        }
+        return removedCount;
+    }
+
+    /**
+     * Checks whether a redundant operation can be removed, with its later uses renamed to the
+     * register already holding the value
+     *
+     * @param op the index of the operation
+     * @param value the value number the operation computes
+     * @param target the register the operation defines
+     * @param index the def-use index of the block
+     * @param registerValues the value number of each register
+     * @param registerDefs the last kept operation defining each register
+     * @return whether the operation can be removed
+     */
+    private boolean CanRemove(int op, int value, int target, ILOCDefUseIndex index,
+                              ILOCIntMap registerValues, ILOCIntMap registerDefs) {
+        int holder = this.holders[value];
+        if (holder < 0 || registerValues.Get(holder, -1) != value)
+            return false; // no register still holds the value
+        if (holder == target)
+            return true;  // recomputing the value into the register that holds it
+
+        int holderDef = registerDefs.Get(holder, -1);
+        if (holderDef < 0)
+            return false; // defined before the block, its next definition is not indexed
+
+        int lastUse = -1;
+        for (int use = index.NextUse(op, 2); use >= 0; use = NextUseOf(index, use, target)) {
+            lastUse = use;
+        }
+        int holderRedefined = index.NextDef(holderDef, 2);
+        return lastUse < 0 || holderRedefined < 0 || holderRedefined >= lastUse;
+    }
+
+    /**
+     * @param index the def-use index of the block
+     * @param op an operation using the register
+     * @param register the register
+     * @return the next use of the same value of the register after op
+     */
+    private static int NextUseOf(ILOCDefUseIndex index, int op, int register) {
+        for (int operand = 0; operand < 3; operand++) {
+            if (index.Register(op, operand) == register && !index.IsDef(op, operand))
+                return index.NextUse(op, operand);
+        }
+        return -1;
+    }
+
+    /**
+     * @param registerValues the value number of each register
+     * @param register a register
+     * @return the value number the register holds, a new one if the register is read before
+     *         the block writes it
+     */
+    private int ValueOf(ILOCIntMap registerValues, int register) {
+        int value = registerValues.Get(register, -1);
+        if (value < 0) {
+            value = this.NewValue(register);
+            registerValues.Put(register, value);
+        }
+        return value;
+    }
+
+    /**
+     * @param holder the register holding the value, -1 if none
+     * @return a new value number
+     */
+    private int NewValue(int holder) {
+        if (this.valueCount == this.holders.length)
+            this.holders = Arrays.copyOf(this.holders, this.valueCount * 2);
+        this.holders[this.valueCount] = holder;
+        return this.valueCount++;
+    }
+
+    /**
+     * Packs an expression into a key for the expression map. The opcode takes the top bits, the
+     * constant of a loadI the low 32 bits, and otherwise the two value numbers 30 bits each, which
+     * holds as many value numbers as a List can hold operations
+     *
+     * @param opCode the opcode
+     * @param first the first value number, or the constant of a loadI
+     * @param second the second value number, or the memory generation of a load
+     * @return the key of the expression
+     */
+    private static long ExpressionKey(int opCode, int first, int second) {
+        if (opCode == ILOCInterpreter.LOADI)
+            return (long) ILOCInterpreter.LOADI << 60 | first & 0xFFFFFFFFL;
+        return (long) opCode << 60 | (long) first << 30 | second;
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that ILOCValueNumbering keeps what a block does, by running the block with
+ * ILOCInterpreter before and after the pass, then times the pass.
+ */
+public class ILOCValueNumberingBenchmark {
+
+    /**
+     * The number of words of memory the blocks run with
+     */
+    private static final int MEMORY_WORDS = 1 << 16;
+
+    /**
+     * The number of registers in the random blocks. Few, so that values are often recomputed
+     */
+    private static final int REGISTERS = 4;
+
+    /**
+     * Checks the pass on random blocks and on the files, then times it on the files
+     * @param args the ILOC files, each parsed as one block
+     */
+    public static void main(String[] args) {
+        boolean equivalent = checkRandomBlocks(20000, 5);
+        List<List<Integer[]>> blocks = new ArrayList<>();
+        List<String> blockPaths = new ArrayList<>();
+        for (String filePath : args) {
+            List<Integer[]> iRep = ILOCBenchmark.ParseFile(filePath);
+            if (iRep == null) {
+                System.err.println(filePath + ": the file has errors, not timing it");
+                continue;
+            }
+            blocks.add(iRep);
+            blockPaths.add(filePath);
+            if (!checkEquivalent(new ArrayList<>(), iRep)) {
+                System.err.println(filePath + ": the pass changes what the block does");
+                equivalent = false;
+            }
+        }
+        if (!equivalent) {
+            System.err.println("The value numbering pass is not correct, not timing it");
+            return;
+        }
+        System.out.println("The value numbering pass keeps what every block does");
+
+        for (int i = 0; i < blocks.size(); i++) {
+            List<Integer[]> iRep = blocks.get(i);
+            int removed = new ILOCValueNumbering(new ArrayList<>(iRep)).Run();
+            long nanos = ILOCBenchmark.Best(3, 5, () -> time(iRep));
+            System.out.printf("%s: %d of %d operations removed in %.2f ms%n", blockPaths.get(i),
+                    removed, iRep.size(), nanos / 1e6);
+        }
+    }
+
+    /**
+     * Checks the pass on random blocks over a few registers
+     * @param count the number of blocks to check
+     * @param seed the random seed
+     * @return whether the pass kept what every block does
+     */
+    private static boolean checkRandomBlocks(int count, long seed) {
+        Random random = new Random(seed);
+
+        // give each register a different word aligned value first, so registers read before the
+        // block writes them don't all hold 0
+        List<Integer[]> prefix = new ArrayList<>();
+        for (int register = 0; register < REGISTERS; register++) {
+            Integer[] iRepElement = new Integer[13];
+            iRepElement[0] = ILOCInterpreter.LOADI;
+            iRepElement[1] = register * 4 + 4;
+            iRepElement[9] = register;
+            prefix.add(iRepElement);
+        }
+
+        boolean equivalent = true;
+        for (int i = 0; i < count; i++) {
+            List<Integer[]> iRep = new ArrayList<>();
+            int length = random.nextInt(40);
+            for (int op = 0; op < length; op++) {
+                Integer[] iRepElement = new Integer[13];
+                int opCode = random.nextInt(10);
+                iRepElement[0] = opCode;
+                if (opCode == ILOCInterpreter.LOADI || opCode == ILOCInterpreter.OUTPUT)
+                    iRepElement[1] = random.nextInt(3) * 4;
+                else if (opCode != ILOCInterpreter.NOP)
+                    iRepElement[1] = random.nextInt(REGISTERS);
+                if (opCode > ILOCInterpreter.STORE && opCode < ILOCInterpreter.OUTPUT)
+                    iRepElement[5] = random.nextInt(REGISTERS);
+                if (opCode < ILOCInterpreter.OUTPUT)
+                    iRepElement[9] = random.nextInt(REGISTERS);
+                iRep.add(iRepElement);
+            }
+            if (!checkEquivalent(prefix, iRep)) {
+                System.err.println("Random block " + i + ": the pass changes what the block does");
+                equivalent = false;
+            }
+        }
+        return equivalent;
+    }
+
+    /**
+     * Runs the pass on a copy of a block, and runs the block before and after it
+     * @param prefix operations to run before the block, which the pass doesn't see
+     * @param iRep the block
+     * @return whether the block prints the same, leaves the same memory and throws the same
+     *         exception after the pass, and the pass removed as many operations as it says
+     */
+    private static boolean checkEquivalent(List<Integer[]> prefix, List<Integer[]> iRep) {
+        List<Integer[]> optimized = new ArrayList<>(iRep);
+        int removed = new ILOCValueNumbering(optimized).Run();
+        if (optimized.size() != iRep.size() - removed)
+            return false;
+
+        int[] memoryBefore = new int[MEMORY_WORDS];
+        int[] memoryAfter = new int[MEMORY_WORDS];
+        List<Integer> outputBefore = new ArrayList<>();
+        List<Integer> outputAfter = new ArrayList<>();
+        String failureBefore = run(prefix, iRep, memoryBefore, outputBefore);
+        String failureAfter = run(prefix, optimized, memoryAfter, outputAfter);
+        return outputBefore.equals(outputAfter) && Arrays.equals(memoryBefore, memoryAfter)
+                && failureBefore.equals(failureAfter);
+    }
+
+    /**
+     * Runs a block once
+     * @param prefix operations to run before the block
+     * @param iRep the block
+     * @param memory the memory to run it with
+     * @param output collects the words printed
+     * @return the class of the exception the block threw, empty if none
+     */
+    private static String run(List<Integer[]> prefix, List<Integer[]> iRep, int[] memory, List<Integer> output) {
+        List<Integer[]> ops = new ArrayList<>(prefix);
+        ops.addAll(iRep);
+        try {
+            new ILOCInterpreter(ops).Run(memory, output::add);
+            return "";
+        }
+        catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    /**
+     * @param iRep the block to optimize, which isn't changed
+     * @return the time taken by the pass on a copy of the block, in nanoseconds
+     */
+    private static long time(List<Integer[]> iRep) {
+        List<Integer[]> copy = new ArrayList<>(iRep);
+        long start = System.nanoTime();
+        new ILOCValueNumbering(copy).Run();
+        return System.nanoTime() - start;
+    }
+}